@@ -41,6 +41,8 @@
 package org.glassfish.build;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -54,9 +56,14 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.artifact.ProjectArtifactMetadata;
+import org.eclipse.aether.RepositorySystemSession;
+import org.glassfish.build.utils.ChecksumSidecars;
+import org.glassfish.build.utils.DirectoryListing;
 
+import static org.glassfish.build.utils.MavenHelper.cleanToBeTokenizedString;
 import static org.glassfish.build.utils.MavenHelper.createArtifact;
 import static org.glassfish.build.utils.MavenHelper.createAttachedArtifacts;
+import static org.glassfish.build.utils.MavenHelper.getCommaSeparatedList;
 import static org.glassfish.build.utils.MavenHelper.getPomInTarget;
 import static org.glassfish.build.utils.MavenHelper.readModel;
 
@@ -73,6 +80,13 @@ public final class AttachAllArtifactsMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     private MavenProject project;
 
+    /**
+     * The current repository/network configuration of Maven.
+     */
+    @Parameter(defaultValue = "${repositorySystemSession}",
+            readonly = true)
+    private RepositorySystemSession repoSession;
+
     /**
      * The project pom file.
      */
@@ -81,6 +95,37 @@ public final class AttachAllArtifactsMojo extends AbstractMojo {
             required = true)
     private File pomFile;
 
+    /**
+     * Comma separated digest algorithms (e.g. {@code SHA-1,MD5}) used to
+     * write checksum sidecar files next to the main and attached artifacts,
+     * no sidecar is written if empty.
+     * The sidecars are local files for the consumers of the build directory,
+     * they are not attached: install and deploy compute the repository
+     * checksums themselves. When set, sidecar files found in the build
+     * directory (e.g. {@code foo.jar.sha1}) are no longer attached as
+     * artifacts.
+     */
+    @Parameter(property = "attach.all.artifacts.checksums",
+            defaultValue = "")
+    private String checksums;
+
+    /**
+     * Number of threads used to compute the checksums, {@code 0} to use the
+     * number of available processors.
+     */
+    @Parameter(property = "attach.all.artifacts.checksumThreads",
+            defaultValue = "0")
+    private int checksumThreads;
+
+    /**
+     * File recording the checksummed files, files unchanged since their
+     * sidecars were written are not read again.
+     */
+    @Parameter(property = "attach.all.artifacts.checksumsCache",
+            defaultValue = "${project.build.directory}/"
+                    + "attach-all-artifacts-checksums.properties")
+    private File checksumsCache;
+
     /**
      * Skip this mojo.
      */
@@ -94,8 +139,12 @@ public final class AttachAllArtifactsMojo extends AbstractMojo {
             return;
         }
 
+        // list target once, the artifacts are searched in the listing
+        DirectoryListing listing = DirectoryListing.list(
+                project.getBuild().getDirectory());
+
         // check for an existing .pom under target
-        File targetPom = getPomInTarget(project.getBuild().getDirectory());
+        File targetPom = getPomInTarget(listing);
         if (targetPom != null) {
             pomFile = targetPom;
         }
@@ -111,11 +160,10 @@ public final class AttachAllArtifactsMojo extends AbstractMojo {
         }
 
         // read the model manually
-        Model model = readModel(pomFile);
+        Model model = readModel(pomFile, repoSession);
 
         // create the project artifact manually
-        Artifact artifact = createArtifact(project.getBuild().getDirectory(),
-                model);
+        Artifact artifact = createArtifact(listing, model);
         if (artifact == null) {
             getLog().info(
                     "Skipping as there is no file found for this artifact");
@@ -123,9 +171,19 @@ public final class AttachAllArtifactsMojo extends AbstractMojo {
         }
 
         // create the project attached artifacts manually
-        List<Artifact> attachedArtifacts =
-                createAttachedArtifacts(project.getBuild().getDirectory(),
-                        artifact, model);
+        List<Artifact> attachedArtifacts = createAttachedArtifacts(listing,
+                artifact, model);
+
+        // the sidecars written by this mojo are not artifacts
+        String algorithms = cleanToBeTokenizedString(checksums);
+        if (!algorithms.isEmpty()) {
+            for (Iterator<Artifact> i = attachedArtifacts.iterator();
+                    i.hasNext();) {
+                if (ChecksumSidecars.isSidecar(i.next().getFile().getName())) {
+                    i.remove();
+                }
+            }
+        }
 
         // add metadata to the project if not a "pom" type
         if (!"pom".equals(model.getPackaging())) {
@@ -143,5 +201,38 @@ public final class AttachAllArtifactsMojo extends AbstractMojo {
         for (Iterator i = attachedArtifacts.iterator(); i.hasNext();) {
             project.addAttachedArtifact((Artifact) i.next());
         }
+
+        if (!algorithms.isEmpty()) {
+            List<File> files = new ArrayList<File>();
+            files.add(artifact.getFile());
+            for (Artifact attached : attachedArtifacts) {
+                files.add(attached.getFile());
+            }
+            writeChecksums(files, getCommaSeparatedList(algorithms));
+        }
+    }
+
+    /**
+     * Write the checksum sidecars of the given files.
+     * @param files the files to checksum
+     * @param algorithms the digest algorithms
+     * @throws MojoExecutionException if an error occurs while computing the
+     * checksums
+     */
+    private void writeChecksums(final List<File> files,
+            final List<String> algorithms) throws MojoExecutionException {
+
+        long start = System.currentTimeMillis();
+        ChecksumSidecars sidecars = ChecksumSidecars.load(checksumsCache);
+        try {
+            int read = sidecars.generate(files, algorithms, checksumThreads);
+            sidecars.save();
+            getLog().info(String.format(
+                    "Checksums %s: %d file(s) hashed, %d up-to-date, %dms",
+                    algorithms, read, files.size() - read,
+                    System.currentTimeMillis() - start));
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
     }
 }
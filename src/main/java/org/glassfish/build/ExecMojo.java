@@ -40,7 +40,12 @@
 package org.glassfish.build;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.maven.plugin.AbstractMojo;
@@ -51,12 +56,15 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
+import org.glassfish.build.utils.ProcessRunner;
 
 import org.apache.tools.ant.BuildEvent;
 import org.apache.tools.ant.BuildListener;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.taskdefs.ExecTask;
 import org.apache.tools.ant.taskdefs.condition.Os;
+import org.apache.tools.ant.types.Commandline;
+import org.apache.tools.ant.types.Environment;
 
 /**
  * Execute a command.
@@ -92,9 +100,132 @@ public final class ExecMojo extends AbstractMojo {
     @Parameter(property = "commandlineArgs")
     private String commandlineArgs;
 
+    /**
+     * The engine used to execute the command, {@code process} to run a
+     * native process or {@code ant} to use the Ant {@code exec} task.
+     */
+    @Parameter(property = "exec.engine", defaultValue = "process")
+    private String engine;
+
+    /**
+     * Environment variables to add to the inherited environment.
+     */
+    @Parameter
+    private Map<String, String> environment;
+
+    /**
+     * Timeout in milliseconds after which the command is destroyed,
+     * {@code 0} for no timeout.
+     */
+    @Parameter(property = "exec.timeout", defaultValue = "0")
+    private long timeout;
+
+    /**
+     * File to write the command output to instead of logging it.
+     */
+    @Parameter(property = "exec.output")
+    private File output;
+
+    /**
+     * Fail the build if the command exits with a non zero code or times out.
+     */
+    @Parameter(property = "exec.failOnError", defaultValue = "false")
+    private Boolean failOnError;
+
+    /**
+     * Name of a project property to set to the exit code of the command.
+     */
+    @Parameter(property = "exec.resultProperty")
+    private String resultProperty;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
 
+        if (new Os("Windows").eval()
+                && !executable.endsWith(".bat")
+                && new File(executable + ".bat").exists()) {
+            executable += ".bat";
+        }
+
+        getLog().info("executable: " + executable);
+        getLog().info("commandLineArgs: " + commandlineArgs);
+
+        if ("process".equals(engine)) {
+            executeProcess();
+        } else if ("ant".equals(engine)) {
+            executeAnt();
+        } else {
+            throw new MojoExecutionException("Unsupported exec engine: "
+                    + engine);
+        }
+    }
+
+    /**
+     * Execute the command in a native process.
+     * @throws MojoExecutionException if the command cannot be executed
+     * @throws MojoFailureException if the command fails and
+     * {@code failOnError} is set
+     */
+    private void executeProcess()
+            throws MojoExecutionException, MojoFailureException {
+
+        List<String> command = new ArrayList<String>();
+        command.add(resolveExecutable());
+        if (commandlineArgs != null) {
+            command.addAll(Arrays.asList(
+                    Commandline.translateCommandline(commandlineArgs)));
+        }
+
+        ProcessRunner runner = new ProcessRunner(command, getLog());
+        runner.setDirectory(workingDir);
+        runner.setEnvironment(environment);
+        runner.setTimeout(timeout);
+        runner.setOutput(output);
+
+        ProcessRunner.Result result;
+        try {
+            result = runner.run();
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+
+        if (resultProperty != null) {
+            project.getProperties().setProperty(resultProperty,
+                    String.valueOf(result.getExitCode()));
+        }
+        if (result.isSuccess()) {
+            getLog().debug("[exec] " + result);
+            return;
+        }
+        if (failOnError) {
+            throw new MojoFailureException(executable + " failed: " + result);
+        }
+        getLog().warn("[exec] " + executable + " failed: " + result);
+    }
+
+    /**
+     * Resolve the executable against the working directory, as the Ant
+     * {@code exec} task does.
+     * @return the executable
+     */
+    private String resolveExecutable() {
+        File file = new File(executable);
+        if (!file.isAbsolute() && workingDir != null) {
+            File resolved = new File(workingDir, executable);
+            if (resolved.isFile()) {
+                return resolved.getAbsolutePath();
+            }
+        }
+        return executable;
+    }
+
+    /**
+     * Execute the command with the Ant {@code exec} task.
+     */
+    private void executeAnt() {
         Project antProject = new Project();
         antProject.addBuildListener(new AntBuildListener());
 
@@ -102,23 +233,44 @@ public final class ExecMojo extends AbstractMojo {
         Iterator it = mavenProperties.keySet().iterator();
         while (it.hasNext()) {
             String key = (String) it.next();
-            antProject.setProperty(key, mavenProperties.getProperty(key));
+            // the result property is set once, it must not be pre-set
+            if (!key.equals(resultProperty)) {
+                antProject.setProperty(key, mavenProperties.getProperty(key));
+            }
         }
         ExecTask exec = new ExecTask();
         exec.setProject(antProject);
         exec.setDir(workingDir);
-
-        if (new Os("Windows").eval()
-                && !executable.endsWith(".bat")
-                && new File(executable + ".bat").exists()) {
-            executable += ".bat";
-        }
-
         exec.setExecutable(executable);
-        getLog().info("executable: " + executable);
         exec.createArg().setLine(commandlineArgs);
-        getLog().info("commandLineArgs: " + commandlineArgs);
-        exec.execute();
+        if (environment != null) {
+            for (Map.Entry<String, String> entry : environment.entrySet()) {
+                Environment.Variable var = new Environment.Variable();
+                var.setKey(entry.getKey());
+                var.setValue(entry.getValue());
+                exec.addEnv(var);
+            }
+        }
+        if (timeout > 0) {
+            exec.setTimeout(timeout);
+        }
+        if (output != null) {
+            exec.setOutput(output);
+        }
+        exec.setFailonerror(failOnError);
+        if (resultProperty != null) {
+            exec.setResultProperty(resultProperty);
+        }
+        try {
+            exec.execute();
+        } finally {
+            if (resultProperty != null) {
+                String result = antProject.getProperty(resultProperty);
+                if (result != null) {
+                    mavenProperties.setProperty(resultProperty, result);
+                }
+            }
+        }
     }
 
     /**
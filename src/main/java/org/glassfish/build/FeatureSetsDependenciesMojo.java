@@ -205,6 +205,33 @@ public final class FeatureSetsDependenciesMojo extends AbstractMojo {
             defaultValue = "false")
     private boolean skip;
 
+    /**
+     * Number of threads used to extract each zip file, {@code 0} to use the
+     * number of available processors.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "unpackThreads",
+            defaultValue = "1")
+    private int unpackThreads;
+
+    /**
+     * The unpacker, {@code unarchiver} to extract all archives with the
+     * plexus {@code UnArchiver}, {@code zip} to extract zip files with the
+     * built-in extractor, or {@code zip-stream} to do so without memory
+     * mapping the zip files. {@code unpackThreads} and {@code skipIdentical}
+     * only apply to the built-in extractor.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "unpacker",
+            defaultValue = "unarchiver")
+    private String unpacker;
+
+    /**
+     * Leave untouched the existing files that have the same size and CRC-32
+     * as the zip entry, to preserve their modification time.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "skipIdentical",
+            defaultValue = "true")
+    private boolean skipIdentical;
+
     /**
      * Configuration of dependency mapping to name.
      * This allows customizing names of dependencies unpacked.
@@ -546,7 +573,8 @@ public final class FeatureSetsDependenciesMojo extends AbstractMojo {
                 getLog().info("Unpacking " + dependency.getArtifact() + " to "
                         + relativeDestDir);
                 unpack(sourceFile, destDir, includes, excludes,
-                        /* silent */ true, getLog(), archiverManager);
+                        /* silent */ true, getLog(), archiverManager,
+                        unpackThreads, skipIdentical, unpacker);
             }
         }
     }
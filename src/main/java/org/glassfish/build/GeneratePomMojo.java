@@ -39,14 +39,10 @@
  */
 package org.glassfish.build;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
-import org.apache.maven.model.Build;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Developer;
 import org.apache.maven.model.IssueManagement;
@@ -59,13 +55,21 @@ import org.apache.maven.model.Scm;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.glassfish.build.utils.EffectiveModelBuilder;
+import org.glassfish.build.utils.PomGenerator;
 
-import static org.glassfish.build.utils.MavenHelper.getCommaSeparatedList;
-import static org.glassfish.build.utils.MavenHelper.modelAsString;
 import static org.glassfish.build.utils.MavenHelper.readModel;
+import static org.glassfish.build.utils.MavenHelper.writeGeneratedPom;
+import static org.glassfish.build.utils.PomGenerator.fingerprint;
+import static org.glassfish.build.utils.PomGenerator.isUpToDate;
+import static org.glassfish.build.utils.PomGenerator.saveFingerprint;
 
 /**
  * Generates a pom from another pom.
@@ -84,6 +88,27 @@ public final class GeneratePomMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     private MavenProject project;
 
+    /**
+     * The entry point to Aether.
+     */
+    @Component
+    private RepositorySystem repoSystem;
+
+    /**
+     * The current repository/network configuration of Maven.
+     */
+    @Parameter(defaultValue = "${repositorySystemSession}",
+            readonly = true)
+    private RepositorySystemSession repoSession;
+
+    /**
+     * The project remote repositories to use.
+     *
+     */
+    @Parameter(defaultValue = "${project.remoteProjectRepositories}",
+            readonly = true)
+    private List<RemoteRepository> remoteRepos;
+
     /**
      * The output directory where the file is written.
      */
@@ -185,7 +210,8 @@ public final class GeneratePomMojo extends AbstractMojo {
 
     /**
      * Comma separated list of exclusions for project dependencies in the
-     * generated pom file.
+     * generated pom file, of the form {@code artifactId},
+     * {@code groupId:artifactId}, {@code groupId:*} or {@code *:artifactId}.
      */
     @Parameter(property = PROPERTY_PREFIX + "excludeDependencies")
     private String excludeDependencies;
@@ -205,6 +231,34 @@ public final class GeneratePomMojo extends AbstractMojo {
             defaultValue = "${project.dependencies}")
     private List<Dependency> dependencies;
 
+    /**
+     * Generate the pom from the flattened effective model of the input pom
+     * instead of its raw model. The parent and import poms are resolved and
+     * the parent reference is removed.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "effective",
+            defaultValue = "false")
+    private Boolean effective;
+
+    /**
+     * Skip the generation if the inputs are unchanged since the last
+     * generation and the generated pom was not modified.
+     * With {@code effective}, the parent and import poms are compared by
+     * path, size and modification time without building the model ; the
+     * generation always runs if one of them is not available locally.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "incremental",
+            defaultValue = "false")
+    private Boolean incremental;
+
+    /**
+     * File recording the fingerprint of the inputs of the last generation.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "fingerprintFile",
+            defaultValue = "${project.build.directory}"
+                    + "/generate-pom.fingerprint")
+    private File fingerprintFile;
+
     /**
      * Skip this mojo.
      */
@@ -219,15 +273,6 @@ public final class GeneratePomMojo extends AbstractMojo {
             defaultValue = "false")
     private Boolean attach;
 
-    /**
-     * Validate that a {@code String} is non {@code null} and non empty.
-     * @param str the {@code String} to validate
-     * @return {@code true} if str is valid, {@code false} otherwise
-     */
-    private static boolean validateString(final String str) {
-        return str != null && !str.isEmpty();
-    }
-
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
 
@@ -236,75 +281,67 @@ public final class GeneratePomMojo extends AbstractMojo {
             return;
         }
 
-        Model model = readModel(pomFile);
-
-        model.setGroupId(groupId);
-        model.setArtifactId(artifactId);
-        model.setVersion(version);
-        model.setDevelopers(devevelopers);
-
-        if (parent != null && validateString(parent.getGroupId())
-                && validateString(parent.getArtifactId())
-                && validateString(parent.getVersion())) {
-            model.setParent(parent);
-        } else {
-            model.setParent(null);
+        PomGenerator generator = new PomGenerator(excludeDependencies,
+                excludeDependencyScopes);
+        if (!effective) {
+            generator.setParent(parent);
         }
+        generator.setScm(scm);
+        generator.setIssueManagement(issueManagement);
+        generator.setMailingLists(mailingLists);
+        generator.setDevelopers(devevelopers);
+        generator.setLicenses(licenses);
+        generator.setOrganization(organization);
 
-        model.setName(name);
-        model.setDescription(description);
-        model.setScm(scm);
-        model.setIssueManagement(issueManagement);
-        model.setMailingLists(mailingLists);
-        model.setLicenses(licenses);
-        model.setOrganization(organization);
-        model.setBuild(new Build());
-
-        List<String> artifactIdExclusions = getCommaSeparatedList(
-                excludeDependencies);
-        List<String> scopeExclusions =  getCommaSeparatedList(
-                excludeDependencyScopes);
+        File newPomFile = new File(outputDirectory, "pom.xml");
+        EffectiveModelBuilder modelBuilder = null;
+        if (effective) {
+            modelBuilder = new EffectiveModelBuilder(repoSystem, repoSession,
+                    remoteRepos);
+        }
 
-        for (Object o : dependencies.toArray()) {
-            Dependency d = (Dependency) o;
-            if (artifactIdExclusions.contains(d.getArtifactId())
-                    || scopeExclusions.contains(d.getScope())) {
-                dependencies.remove(d);
+        String fingerprint = null;
+        if (incremental) {
+            Model inputs = generator.createInputs(groupId, artifactId,
+                    version, dependencies);
+            inputs.setName(name);
+            inputs.setDescription(description);
+            inputs.addProperty("effective", String.valueOf(effective));
+            List<File> files = Collections.emptyList();
+            if (modelBuilder != null) {
+                // raw inputs of the effective model, not the model itself
+                files = modelBuilder.findInputs(pomFile);
+                modelBuilder.addUserProperties(inputs);
+            }
+            if (files != null) {
+                fingerprint = fingerprint(pomFile, files, inputs);
             }
         }
 
-        model.setDependencies(dependencies);
-
-        File newPomFile = new File(outputDirectory, "pom.xml");
-        newPomFile.getParentFile().mkdirs();
-
-        FileWriter fw = null;
-        try {
-            // write comments from base pom
-            fw = new FileWriter(newPomFile);
-            String line;
-            BufferedReader br = new BufferedReader(new FileReader(pomFile));
-            while (true) {
-                line = br.readLine();
-                if (line == null || line.startsWith("<project")) {
-                    break;
-                }
-                fw.write(line);
-                fw.write('\n');
+        if (fingerprint != null
+                && isUpToDate(fingerprintFile, fingerprint, newPomFile)) {
+            getLog().info("Generated pom is up-to-date: " + newPomFile);
+        } else {
+            Model base;
+            if (modelBuilder != null) {
+                modelBuilder.prefetch(Collections.singletonList(pomFile),
+                        /* threads */ 0);
+                base = modelBuilder.build(pomFile);
+            } else {
+                base = readModel(pomFile, repoSession);
             }
-
-            // write new pom and skip first line (xml header)
-            String pom = modelAsString(model);
-            int ind = pom.indexOf('\n');
-            fw.write(pom.substring(ind));
-        } catch (IOException ex) {
-            throw new MojoExecutionException(ex.getMessage(), ex);
-        } finally {
-            try {
-                if (fw != null) {
-                    fw.close();
-                }
-            } catch (IOException ex) {
+            Model model = generator.create(base, groupId, artifactId,
+                    version, dependencies);
+            model.setName(name);
+            model.setDescription(description);
+            getLog().info(String.format("Dependencies: %d kept, %d excluded,"
+                    + " %d excluded by scope", generator.getKept(),
+                    generator.getExcludedByPattern(),
+                    generator.getExcludedByScope()));
+
+            writeGeneratedPom(model, pomFile, newPomFile);
+            if (fingerprint != null) {
+                saveFingerprint(fingerprintFile, fingerprint, newPomFile);
             }
         }
 
@@ -0,0 +1,496 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.model.Developer;
+import org.apache.maven.model.IssueManagement;
+import org.apache.maven.model.License;
+import org.apache.maven.model.MailingList;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Organization;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Scm;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.glassfish.build.utils.EffectiveModelBuilder;
+import org.glassfish.build.utils.PomGenerator;
+
+import static org.glassfish.build.utils.MavenHelper.getCommaSeparatedList;
+import static org.glassfish.build.utils.MavenHelper.readModel;
+import static org.glassfish.build.utils.MavenHelper.writeGeneratedPom;
+import static org.glassfish.build.utils.PomGenerator.isUpToDate;
+import static org.glassfish.build.utils.PomGenerator.saveFingerprint;
+
+/**
+ * Generates the poms of several modules in one execution.
+ * The configuration common to the generated poms is resolved once from the
+ * current project, the poms of the modules are read and written in
+ * parallel. Each pom is written to {@code pom.xml} in the build directory of
+ * its module.
+ */
+@Mojo(name = "generate-poms",
+      aggregator = true)
+public final class GeneratePomsMojo extends AbstractMojo {
+
+    /**
+     * Parameters property prefix.
+     */
+    private static final String PROPERTY_PREFIX = "generate.poms.";
+
+    /**
+     * Name of the file recording the fingerprint of the inputs of the last
+     * generation, in the build directory of each module.
+     */
+    private static final String FINGERPRINT_FILE = "generate-poms.fingerprint";
+
+    /**
+     * The projects in the reactor.
+     */
+    @Parameter(defaultValue = "${reactorProjects}",
+            required = true,
+            readonly = true)
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * The entry point to Aether.
+     */
+    @Component
+    private RepositorySystem repoSystem;
+
+    /**
+     * The current repository/network configuration of Maven.
+     */
+    @Parameter(defaultValue = "${repositorySystemSession}",
+            readonly = true)
+    private RepositorySystemSession repoSession;
+
+    /**
+     * The remote repositories to use.
+     *
+     */
+    @Parameter(defaultValue = "${project.remoteProjectRepositories}",
+            readonly = true)
+    private List<RemoteRepository> remoteRepos;
+
+    /**
+     * Comma separated list of the modules to generate the poms of, modules
+     * are identified by {@code artifactId} or {@code groupId:artifactId}.
+     * All the projects in the reactor are selected if empty.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "modules")
+    private String modules;
+
+    /**
+     * The generated poms parent.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "parent")
+    private Parent parent;
+
+    /**
+     * The generated poms description.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "description")
+    private String description;
+
+    /**
+     * The generated poms name.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "name")
+    private String name;
+
+    /**
+     * The generated poms scm.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "scm",
+            defaultValue = "${project.scm}")
+    private Scm scm;
+
+    /**
+     * The generated poms issueManagement.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "issueManagement",
+            defaultValue = "${project.issueManagement}")
+    private IssueManagement issueManagement;
+
+    /**
+     * The generated poms mailingLists.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "mailingLists",
+            defaultValue = "${project.mailingLists}")
+    private List<MailingList> mailingLists;
+
+    /**
+     * The generated poms developers.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "developers",
+            defaultValue = "${project.developers}")
+    private List<Developer> developers;
+
+    /**
+     * The generated poms licenses.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "licenses",
+            defaultValue = "${project.licenses}")
+    private List<License> licenses;
+
+    /**
+     * The generated poms organization.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "organization",
+            defaultValue = "${project.organization}")
+    private Organization organization;
+
+    /**
+     * Comma separated list of exclusions for the dependencies in the
+     * generated poms, of the form {@code artifactId},
+     * {@code groupId:artifactId}, {@code groupId:*} or {@code *:artifactId}.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "excludeDependencies")
+    private String excludeDependencies;
+
+    /**
+     * Comma separated list of scopes to excludes for the dependencies in the
+     * generated poms.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "excludeDependencyScope",
+            defaultValue = "system,test")
+    private String excludeDependencyScopes;
+
+    /**
+     * Generate the poms from the flattened effective models of the modules
+     * instead of their raw models. The parent and import poms are resolved
+     * and the parent reference is removed.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "effective",
+            defaultValue = "false")
+    private Boolean effective;
+
+    /**
+     * Skip the generation of the poms whose inputs are unchanged since the
+     * last generation and that were not modified.
+     * With {@code effective}, the parent and import poms are compared by
+     * path, size and modification time without building the models ; a pom
+     * is always generated if one of them is not available locally.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "incremental",
+            defaultValue = "false")
+    private Boolean incremental;
+
+    /**
+     * Number of threads used to generate the poms, {@code 0} to use the
+     * number of available processors.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "threads",
+            defaultValue = "0")
+    private int threads;
+
+    /**
+     * Skip this mojo.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "skip",
+            defaultValue = "false")
+    private Boolean skip;
+
+    /**
+     * Set the generated poms as the pom files of their modules.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "attach",
+            defaultValue = "false")
+    private Boolean attach;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+
+        if (skip) {
+            getLog().info("skipping...");
+            return;
+        }
+
+        List<MavenProject> selected = selectModules();
+        if (selected.isEmpty()) {
+            getLog().info("No module selected");
+            return;
+        }
+
+        final PomGenerator generator = new PomGenerator(excludeDependencies,
+                excludeDependencyScopes);
+        if (!effective) {
+            generator.setParent(parent);
+        }
+        generator.setScm(scm);
+        generator.setIssueManagement(issueManagement);
+        generator.setMailingLists(mailingLists);
+        generator.setDevelopers(developers);
+        generator.setLicenses(licenses);
+        generator.setOrganization(organization);
+
+        long start = System.currentTimeMillis();
+        int nThreads = threads;
+        if (nThreads <= 0) {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        final EffectiveModelBuilder modelBuilder;
+        if (effective) {
+            modelBuilder = new EffectiveModelBuilder(repoSystem, repoSession,
+                    remoteRepos);
+        } else {
+            modelBuilder = null;
+        }
+
+        // check the fingerprints before resolving anything
+        final List<MavenProject> stale = new ArrayList<MavenProject>();
+        final List<String> fingerprints = new ArrayList<String>();
+        for (MavenProject module : selected) {
+            String fingerprint = null;
+            if (incremental) {
+                fingerprint = fingerprint(generator, modelBuilder, module);
+            }
+            if (fingerprint == null || !isUpToDate(getFingerprintFile(module),
+                    fingerprint, getGeneratedPom(module))) {
+                stale.add(module);
+                fingerprints.add(fingerprint);
+            }
+        }
+        int upToDate = selected.size() - stale.size();
+
+        if (modelBuilder != null && !stale.isEmpty()) {
+            List<File> pomFiles = new ArrayList<File>();
+            for (MavenProject module : stale) {
+                pomFiles.add(module.getFile());
+            }
+            int prefetched = modelBuilder.prefetch(pomFiles, nThreads);
+            getLog().info(String.format(
+                    "Prefetched %d parent and import pom(s) in %dms",
+                    prefetched, System.currentTimeMillis() - start));
+        }
+
+        if (!stale.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(
+                    Math.min(nThreads, stale.size()));
+            try {
+                List<Future<File>> futures = new ArrayList<Future<File>>();
+                for (int i = 0; i < stale.size(); i++) {
+                    final MavenProject module = stale.get(i);
+                    final String fingerprint = fingerprints.get(i);
+                    futures.add(executor.submit(new Callable<File>() {
+                        @Override
+                        public File call() throws MojoExecutionException {
+                            return generate(generator, modelBuilder, module,
+                                    fingerprint);
+                        }
+                    }));
+                }
+                for (Future<File> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException(ex.getMessage(), ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof MojoExecutionException) {
+                    throw (MojoExecutionException) ex.getCause();
+                }
+                throw new MojoExecutionException(ex.getCause().getMessage(),
+                        ex.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        if (attach) {
+            for (MavenProject module : selected) {
+                module.setFile(getGeneratedPom(module));
+            }
+        }
+        getLog().info(String.format(
+                "Generated %d pom(s), %d up-to-date, in %dms",
+                stale.size(), upToDate, System.currentTimeMillis() - start));
+        getLog().info(String.format("Dependencies: %d kept, %d excluded,"
+                + " %d excluded by scope", generator.getKept(),
+                generator.getExcludedByPattern(),
+                generator.getExcludedByScope()));
+    }
+
+    /**
+     * Select the reactor projects to generate the poms of.
+     * @return the selected projects, in reactor order
+     * @throws MojoExecutionException if a declared module is not in the
+     * reactor
+     */
+    private List<MavenProject> selectModules()
+            throws MojoExecutionException {
+
+        List<String> ids = new ArrayList<String>();
+        for (String id : getCommaSeparatedList(modules)) {
+            if (!id.trim().isEmpty()) {
+                ids.add(id.trim());
+            }
+        }
+        if (ids.isEmpty()) {
+            return reactorProjects;
+        }
+        List<MavenProject> selected = new ArrayList<MavenProject>();
+        for (String id : ids) {
+            MavenProject match = null;
+            for (MavenProject module : reactorProjects) {
+                if (id.equals(module.getArtifactId())
+                        || id.equals(module.getGroupId() + ":"
+                                + module.getArtifactId())) {
+                    match = module;
+                    break;
+                }
+            }
+            if (match == null) {
+                throw new MojoExecutionException(
+                        "Module not found in the reactor: " + id);
+            }
+            if (!selected.contains(match)) {
+                selected.add(match);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Compute the fingerprint of the inputs of the generated pom of a module.
+     * @param generator the generator holding the common configuration
+     * @param modelBuilder the effective model builder, {@code null} to use
+     * the raw model
+     * @param module the module
+     * @return the fingerprint, or {@code null} if the inputs are not all
+     * available locally
+     * @throws MojoExecutionException if an error occurs while reading the
+     * pom
+     */
+    private String fingerprint(final PomGenerator generator,
+            final EffectiveModelBuilder modelBuilder,
+            final MavenProject module) throws MojoExecutionException {
+
+        Model inputs = generator.createInputs(module.getGroupId(),
+                module.getArtifactId(), module.getVersion(),
+                module.getDependencies());
+        inputs.setName(name);
+        inputs.setDescription(description);
+        inputs.addProperty("effective", String.valueOf(effective));
+        List<File> files = Collections.emptyList();
+        if (modelBuilder != null) {
+            files = modelBuilder.findInputs(module.getFile());
+            modelBuilder.addUserProperties(inputs);
+        }
+        if (files == null) {
+            return null;
+        }
+        return PomGenerator.fingerprint(module.getFile(), files, inputs);
+    }
+
+    /**
+     * Generate the pom of a module.
+     * @param generator the generator holding the common configuration
+     * @param modelBuilder the effective model builder, {@code null} to use
+     * the raw model
+     * @param module the module
+     * @param fingerprint the fingerprint of the inputs to record,
+     * {@code null} to record none
+     * @return the generated pom file
+     * @throws MojoExecutionException if an error occurs while reading or
+     * writing the pom
+     */
+    private File generate(final PomGenerator generator,
+            final EffectiveModelBuilder modelBuilder,
+            final MavenProject module,
+            final String fingerprint) throws MojoExecutionException {
+
+        Model base;
+        if (modelBuilder != null) {
+            base = modelBuilder.build(module.getFile());
+        } else {
+            base = readModel(module.getFile(), repoSession);
+        }
+        Model model = generator.create(base,
+                module.getGroupId(), module.getArtifactId(),
+                module.getVersion(),
+                module.getDependencies());
+        model.setName(name);
+        model.setDescription(description);
+
+        File pom = getGeneratedPom(module);
+        writeGeneratedPom(model, module.getFile(), pom);
+        if (fingerprint != null) {
+            saveFingerprint(getFingerprintFile(module), fingerprint, pom);
+        }
+        return pom;
+    }
+
+    /**
+     * Get the generated pom file of a module.
+     * @param module the module
+     * @return the file
+     */
+    private static File getGeneratedPom(final MavenProject module) {
+        return new File(module.getBuild().getDirectory(), "pom.xml");
+    }
+
+    /**
+     * Get the fingerprint file of a module.
+     * @param module the module
+     * @return the file
+     */
+    private static File getFingerprintFile(final MavenProject module) {
+        return new File(module.getBuild().getDirectory(), FINGERPRINT_FILE);
+    }
+}
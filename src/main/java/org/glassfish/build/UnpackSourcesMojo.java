@@ -40,8 +40,21 @@
 package org.glassfish.build;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.AbstractMojo;
@@ -58,11 +71,19 @@ import org.codehaus.plexus.archiver.manager.ArchiverManager;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
 
+import org.glassfish.build.utils.MissingArtifactCache;
+import org.glassfish.build.utils.UnpackMarker;
+
 import static org.glassfish.build.utils.MavenHelper.cleanToBeTokenizedString;
+import static org.glassfish.build.utils.MavenHelper.createArtifact;
+import static org.glassfish.build.utils.MavenHelper.createArtifactRequest;
 import static org.glassfish.build.utils.MavenHelper.filterArtifacts;
-import static org.glassfish.build.utils.MavenHelper.resolveArtifact;
+import static org.glassfish.build.utils.MavenHelper.getArchiveFiles;
+import static org.glassfish.build.utils.MavenHelper.mergeZips;
 import static org.glassfish.build.utils.MavenHelper.unpack;
 
 /**
@@ -79,6 +100,12 @@ public final class UnpackSourcesMojo extends AbstractMojo {
      */
     private static final String PROPERTY_PREFIX = "gfbuild.unpack";
 
+    /**
+     * Number of batches per resolver thread, so that unpacking can start
+     * before all artifacts are resolved.
+     */
+    private static final int BATCHES_PER_THREAD = 4;
+
     /**
      * The maven project.
      */
@@ -236,6 +263,112 @@ public final class UnpackSourcesMojo extends AbstractMojo {
             defaultValue = "false")
     private boolean attachSources;
 
+    /**
+     * Number of concurrent sources resolution requests.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "resolveThreads",
+            defaultValue = "4")
+    private int resolveThreads;
+
+    /**
+     * Skip the dependencies that do not have a sources artifact instead of
+     * failing.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "skipMissingSources",
+            defaultValue = "false")
+    private boolean skipMissingSources;
+
+    /**
+     * File recording the sources artifacts found missing from the remote
+     * repositories, they are not requested again until the entry expires.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "missingSourcesCache",
+            defaultValue = "${settings.localRepository}/.glassfishbuild/"
+                    + "missing-sources.properties")
+    private File missingSourcesCache;
+
+    /**
+     * Time-to-live in hours of the entries of the missing sources cache.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "missingSourcesCacheTtl",
+            defaultValue = "24")
+    private long missingSourcesCacheTtl;
+
+    /**
+     * Directory of the markers recording the unpacked artifacts, unchanged
+     * artifacts are not unpacked again.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "markersDirectory",
+            defaultValue = "${project.build.directory}/unpack-sources-markers")
+    private File markersDirectory;
+
+    /**
+     * Number of threads used to extract each sources jar, {@code 0} to use
+     * the number of available processors.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "unpackThreads",
+            defaultValue = "1")
+    private int unpackThreads;
+
+    /**
+     * The unpacker, {@code unarchiver} to extract all archives with the
+     * plexus {@code UnArchiver}, {@code zip} to extract zip files with the
+     * built-in extractor, or {@code zip-stream} to do so without memory
+     * mapping the zip files. {@code unpackThreads} and {@code skipIdentical}
+     * only apply to the built-in extractor.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "unpacker",
+            defaultValue = "unarchiver")
+    private String unpacker;
+
+    /**
+     * Leave untouched the existing files that have the same size and CRC-32
+     * as the zip entry, to preserve their modification time.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "skipIdentical",
+            defaultValue = "true")
+    private boolean skipIdentical;
+
+    /**
+     * Write the selected entries of the sources jars into a single jar file
+     * instead of unpacking them in {@code outputDirectory}. The entries are
+     * copied without being uncompressed.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "aggregate",
+            defaultValue = "false")
+    private boolean aggregate;
+
+    /**
+     * The aggregate sources jar.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "aggregateFile",
+            defaultValue = "${project.build.directory}/"
+                    + "${project.build.finalName}-dependency-sources.jar")
+    private File aggregateFile;
+
+    /**
+     * Behavior for files found in more than one sources jar when
+     * aggregating, one of "preserve" (the first jar in dependency order
+     * wins), "overwrite" (the last jar wins) or "fail".
+     */
+    @Parameter(property = PROPERTY_PREFIX + "aggregateDuplicate",
+            defaultValue = "preserve")
+    private String aggregateDuplicate;
+
+    /**
+     * Attach the aggregate sources jar to the project.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "attachAggregate",
+            defaultValue = "false")
+    private boolean attachAggregate;
+
+    /**
+     * The classifier of the attached aggregate sources jar.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "aggregateClassifier",
+            defaultValue = "dependency-sources")
+    private String aggregateClassifier;
+
     /**
      * Skip this mojo.
      */
@@ -243,6 +376,33 @@ public final class UnpackSourcesMojo extends AbstractMojo {
             defaultValue = "false")
     private boolean skip;
 
+    /**
+     * The markers of the unpacked artifacts, keyed by
+     * {@code groupId:artifactId}.
+     */
+    private final Map<String, UnpackMarker> markers =
+            new LinkedHashMap<String, UnpackMarker>();
+
+    /**
+     * The keys of the artifacts processed by this execution.
+     */
+    private final Set<String> processed = new HashSet<String>();
+
+    /**
+     * The resolved sources jars to aggregate, keyed by coordinates.
+     */
+    private final Map<String, File> resolved = new HashMap<String, File>();
+
+    /**
+     * The number of unpacked artifacts.
+     */
+    private int unpacked;
+
+    /**
+     * The number of artifacts skipped because already unpacked.
+     */
+    private int upToDate;
+
     @Override
     public void execute() throws MojoExecutionException {
         if (skip) {
@@ -258,23 +418,271 @@ public final class UnpackSourcesMojo extends AbstractMojo {
                 includeGroupIds, excludeGroupIds, includeArtifactIds,
                 excludeArtifactIds);
 
+        MissingArtifactCache missingCache = MissingArtifactCache.load(
+                missingSourcesCache,
+                TimeUnit.HOURS.toMillis(missingSourcesCacheTtl));
+        List<String> missing = new ArrayList<String>();
+
+        try {
+            for (UnpackMarker marker : UnpackMarker.readAll(markersDirectory)) {
+                markers.put(marker.getKey(), marker);
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+
+        // sources.jar requests
+        List<ArtifactRequest> requests = new ArrayList<ArtifactRequest>(
+                filteredDependencies.size());
         for (Artifact artifact : filteredDependencies) {
+            ArtifactRequest request = createArtifactRequest(
+                    artifact.getGroupId(), artifact.getArtifactId(),
+                    /* classifier */ "sources", /* type */ "jar",
+                    artifact.getVersion(), remoteRepos);
+            String coords = request.getArtifact().toString();
+            File localFile = new File(
+                    repoSession.getLocalRepository().getBasedir(),
+                    repoSession.getLocalRepositoryManager()
+                            .getPathForLocalArtifact(request.getArtifact()));
+            if (missingCache.isMissing(coords, localFile)) {
+                missing.add(coords);
+            } else {
+                requests.add(request);
+            }
+        }
+
+        try {
+            if (!requests.isEmpty()) {
+                resolveAndUnpack(requests, missingCache, missing);
+            }
+            if (!aggregate) {
+                removeStale();
+            }
+        } finally {
+            try {
+                missingCache.save();
+            } catch (IOException ex) {
+                getLog().warn("Unable to save " + missingSourcesCache + ": "
+                        + ex.getMessage());
+            }
+        }
 
-            // resolve sources.jar
-            ArtifactResult result = resolveArtifact(artifact.getGroupId(),
-                    artifact.getArtifactId(), /* classifier */ "sources",
-                    /* type */ "jar", artifact.getVersion(), repoSystem,
-                    repoSession, remoteRepos);
-
-            // unpack
-            unpack(result.getArtifact().getFile(), outputDirectory,
-                    cleanToBeTokenizedString(this.includes),
-                    cleanToBeTokenizedString(this.excludes), silent, getLog(),
-                    archiverManager);
+        if (aggregate) {
+            aggregate(requests);
+        } else {
+            getLog().info("Unpacked " + unpacked + " sources artifact(s), "
+                    + upToDate + " up-to-date");
         }
 
-        if (attachSources) {
+        if (!missing.isEmpty()) {
+            if (!skipMissingSources) {
+                throw new MojoExecutionException("Sources not found: "
+                        + missing);
+            }
+            for (String coords : missing) {
+                getLog().warn("Sources not found, skipping: " + coords);
+            }
+        }
+
+        if (attachSources && !aggregate) {
             project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
         }
     }
+
+    /**
+     * Write the resolved sources jars into the aggregate sources jar, in the
+     * order of the requests.
+     * @param requests the requests
+     * @throws MojoExecutionException if an error occurs while writing
+     */
+    private void aggregate(final List<ArtifactRequest> requests)
+            throws MojoExecutionException {
+
+        List<File> jars = new ArrayList<File>(resolved.size());
+        for (ArtifactRequest request : requests) {
+            File jar = resolved.get(request.getArtifact().toString());
+            if (jar != null) {
+                jars.add(jar);
+            }
+        }
+        mergeZips(getLog(), aggregateDuplicate, jars,
+                cleanToBeTokenizedString(this.includes),
+                cleanToBeTokenizedString(this.excludes), aggregateFile);
+
+        if (attachAggregate) {
+            Artifact artifact = createArtifact(project.getGroupId(),
+                    project.getArtifactId(), project.getVersion(), "jar",
+                    aggregateClassifier);
+            artifact.setFile(aggregateFile);
+            project.addAttachedArtifact(artifact);
+        }
+    }
+
+    /**
+     * Resolve the given requests in concurrent batches, and unpack the
+     * resolved artifacts as soon as each batch completes. When aggregating,
+     * the resolved artifacts are recorded instead.
+     * Artifacts missing from the remote repositories are recorded in the
+     * given cache and list.
+     * @param requests the requests to resolve
+     * @param missingCache the cache of missing artifacts
+     * @param missing the list of missing artifacts to update
+     * @throws MojoExecutionException if an error occurs while resolving or
+     * unpacking
+     */
+    private void resolveAndUnpack(final List<ArtifactRequest> requests,
+            final MissingArtifactCache missingCache,
+            final List<String> missing) throws MojoExecutionException {
+
+        int nThreads = Math.max(1, Math.min(resolveThreads, requests.size()));
+        int batchSize = Math.max(1,
+                requests.size() / (nThreads * BATCHES_PER_THREAD));
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            CompletionService<List<ArtifactResult>> completion =
+                    new ExecutorCompletionService<List<ArtifactResult>>(
+                            executor);
+            int batches = 0;
+            for (int i = 0; i < requests.size(); i += batchSize) {
+                final List<ArtifactRequest> batch = requests.subList(i,
+                        Math.min(i + batchSize, requests.size()));
+                completion.submit(new Callable<List<ArtifactResult>>() {
+                    @Override
+                    public List<ArtifactResult> call() {
+                        try {
+                            return repoSystem.resolveArtifacts(repoSession,
+                                    batch);
+                        } catch (ArtifactResolutionException ex) {
+                            return ex.getResults();
+                        }
+                    }
+                });
+                batches++;
+            }
+
+            for (int i = 0; i < batches; i++) {
+                for (ArtifactResult result : completion.take().get()) {
+                    String coords = result.getRequest().getArtifact()
+                            .toString();
+                    if (result.isResolved()) {
+                        missingCache.setPresent(coords);
+                        if (aggregate) {
+                            resolved.put(coords,
+                                    result.getArtifact().getFile());
+                        } else {
+                            unpackIfChanged(result.getArtifact());
+                        }
+                    } else if (result.isMissing()) {
+                        missingCache.setMissing(coords);
+                        missing.add(coords);
+                    } else if (result.getExceptions().isEmpty()) {
+                        throw new MojoExecutionException(
+                                "Unable to resolve " + coords);
+                    } else {
+                        Exception ex = result.getExceptions().get(0);
+                        throw new MojoExecutionException(ex.getMessage(),
+                                ex);
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        } catch (ExecutionException ex) {
+            throw new MojoExecutionException(ex.getCause().getMessage(),
+                    ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Unpack a resolved sources artifact, unless its marker shows that it is
+     * already unpacked. The files of a previously unpacked version that are
+     * not part of the new version are removed after the extraction, the
+     * others are left in place so that identical files are not rewritten.
+     * @param artifact the resolved artifact
+     * @throws MojoExecutionException if an error occurs while unpacking
+     */
+    private void unpackIfChanged(
+            final org.eclipse.aether.artifact.Artifact artifact)
+            throws MojoExecutionException {
+
+        String incl = cleanToBeTokenizedString(this.includes);
+        String excl = cleanToBeTokenizedString(this.excludes);
+        File file = artifact.getFile();
+        String key = artifact.getGroupId() + ':' + artifact.getArtifactId();
+        processed.add(key);
+        UnpackMarker previous = markers.get(key);
+        try {
+            UnpackMarker marker = UnpackMarker.create(markersDirectory,
+                    artifact.getGroupId(), artifact.getArtifactId(),
+                    artifact.getVersion(), file, incl + '|' + excl, previous);
+            if (marker.isSameAs(previous) && outputDirectory.isDirectory()) {
+                getLog().debug("Up-to-date: " + artifact);
+                upToDate++;
+                return;
+            }
+            unpack(file, outputDirectory, incl, excl, silent, getLog(),
+                    archiverManager, unpackThreads, skipIdentical, unpacker);
+            marker.setFiles(getArchiveFiles(file, incl, excl));
+            marker.save();
+            markers.put(key, marker);
+            if (previous != null) {
+                // the files of the new version are claimed by its marker
+                removeFiles(previous);
+            }
+            unpacked++;
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Remove the files and markers of the artifacts unpacked by a previous
+     * execution that are no longer dependencies.
+     */
+    private void removeStale() {
+        List<UnpackMarker> stale = new ArrayList<UnpackMarker>();
+        for (UnpackMarker marker : markers.values()) {
+            if (!processed.contains(marker.getKey())) {
+                stale.add(marker);
+            }
+        }
+        for (UnpackMarker marker : stale) {
+            getLog().info("Removing sources of " + marker.getKey() + ':'
+                    + marker.getVersion());
+            markers.remove(marker.getKey());
+            marker.delete();
+            removeFiles(marker);
+        }
+    }
+
+    /**
+     * Remove the unpacked files of a marker, files also unpacked from other
+     * artifacts are preserved. Directories left empty are removed.
+     * @param marker the marker
+     */
+    private void removeFiles(final UnpackMarker marker) {
+        Set<String> claimed = new HashSet<String>();
+        for (UnpackMarker other : markers.values()) {
+            if (other != marker) {
+                claimed.addAll(other.getFiles());
+            }
+        }
+        for (String name : marker.getFiles()) {
+            if (claimed.contains(name)) {
+                continue;
+            }
+            File file = new File(outputDirectory, name);
+            if (!file.delete()) {
+                continue;
+            }
+            File parent = file.getParentFile();
+            while (parent != null && !parent.equals(outputDirectory)
+                    && parent.delete()) {
+                parent = parent.getParentFile();
+            }
+        }
+    }
 }
@@ -0,0 +1,468 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.build;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import org.glassfish.build.utils.ZipCentralDirectory;
+
+import static org.glassfish.build.utils.MavenHelper.escapeIndexField;
+
+/**
+ * Compares two zip files using their central directories.
+ * Entries are compared by name, size and CRC ; the entries data is only
+ * read when {@code compareContent} is enabled.
+ */
+@Mojo(name = "zip-diff")
+public final class ZipDiffMojo extends AbstractMojo {
+
+    /**
+     * Parameters property prefix.
+     */
+    private static final String PROPERTY_PREFIX = "gfzip.diff.";
+
+    /**
+     * Size of the buffers used to compare entries content.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The reference zip file, e.g. the previous build.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "baseline", required = true)
+    private File baseline;
+
+    /**
+     * The zip file to compare against the baseline.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "file",
+            defaultValue = "${project.build.directory}/"
+                    + "${project.build.finalName}.zip")
+    private File file;
+
+    /**
+     * The report file.
+     * Each line contains tab separated fields: {@code added},
+     * {@code removed}, {@code changed} or {@code duplicate}, the entry name
+     * escaped like the zip index, the sizes and the CRCs. An entry name that
+     * occurs more than once in a zip file has one line per occurrence.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "reportFile",
+            defaultValue = "${project.build.directory}/zip-diff.txt")
+    private File reportFile;
+
+    /**
+     * Decompress and compare the content of the entries that have the same
+     * size and CRC.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "compareContent",
+            defaultValue = "false")
+    private boolean compareContent;
+
+    /**
+     * Fail the build if the zip files are different.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "failOnDifference",
+            defaultValue = "false")
+    private boolean failOnDifference;
+
+    /**
+     * Skip this mojo.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "skip",
+            defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping zip-diff");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, List<ZipCentralDirectory.Entry>> oldEntries;
+        Map<String, List<ZipCentralDirectory.Entry>> newEntries;
+        try {
+            oldEntries = entriesByName(ZipCentralDirectory.read(baseline));
+            newEntries = entriesByName(ZipCentralDirectory.read(file));
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+
+        List<String> added = new ArrayList<String>();
+        List<String> removed = new ArrayList<String>();
+        List<String> changed = new ArrayList<String>();
+        List<String> duplicated = new ArrayList<String>();
+        List<String> same = new ArrayList<String>();
+        for (Map.Entry<String, List<ZipCentralDirectory.Entry>> e
+                : newEntries.entrySet()) {
+            List<ZipCentralDirectory.Entry> oldList =
+                    oldEntries.get(e.getKey());
+            List<ZipCentralDirectory.Entry> newList = e.getValue();
+            if (oldList == null) {
+                added.add(e.getKey());
+            } else if (oldList.size() != newList.size()) {
+                duplicated.add(e.getKey());
+            } else if (!sameEntries(oldList, newList)) {
+                changed.add(e.getKey());
+            } else if (newList.size() == 1
+                    && !newList.get(0).isDirectory()) {
+                // the content of duplicate names cannot be read by name
+                same.add(e.getKey());
+            }
+        }
+        for (String name : oldEntries.keySet()) {
+            if (!newEntries.containsKey(name)) {
+                removed.add(name);
+            }
+        }
+        if (compareContent && !same.isEmpty()) {
+            changed.addAll(compareContent(same));
+        }
+
+        writeReport(added, removed, changed, duplicated, oldEntries,
+                newEntries);
+        getLog().info(String.format(
+                "[zip-diff] %s: %d added, %d removed, %d changed,"
+                + " %d duplicate names (%dms)",
+                file.getName(), added.size(), removed.size(), changed.size(),
+                duplicated.size(), System.currentTimeMillis() - start));
+        getLog().info("[zip-diff] report: " + reportFile);
+
+        if (failOnDifference
+                && !(added.isEmpty() && removed.isEmpty()
+                    && changed.isEmpty() && duplicated.isEmpty())) {
+            throw new MojoFailureException(String.format(
+                    "%s differs from %s, see %s", file, baseline,
+                    reportFile));
+        }
+    }
+
+    /**
+     * Group the entries of a central directory by name.
+     * @param cd the central directory
+     * @return the entries of each name, in central directory order
+     */
+    private static Map<String, List<ZipCentralDirectory.Entry>> entriesByName(
+            final ZipCentralDirectory cd) {
+
+        Map<String, List<ZipCentralDirectory.Entry>> entries =
+                new LinkedHashMap<String, List<ZipCentralDirectory.Entry>>();
+        for (ZipCentralDirectory.Entry entry : cd.getEntries()) {
+            List<ZipCentralDirectory.Entry> list =
+                    entries.get(entry.getName());
+            if (list == null) {
+                list = new ArrayList<ZipCentralDirectory.Entry>(1);
+                entries.put(entry.getName(), list);
+            }
+            list.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Compare the occurrences of a name by size and CRC.
+     * @param oldList the baseline entries
+     * @param newList the compared entries, of the same size
+     * @return {@code true} if all the occurrences have the same size and CRC
+     */
+    private static boolean sameEntries(
+            final List<ZipCentralDirectory.Entry> oldList,
+            final List<ZipCentralDirectory.Entry> newList) {
+
+        for (int i = 0; i < oldList.size(); i++) {
+            if (oldList.get(i).getSize() != newList.get(i).getSize()
+                    || oldList.get(i).getCrc() != newList.get(i).getCrc()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compare the content of entries present in both zip files.
+     * @param names the names of the entries to compare
+     * @return the names of the entries that have a different content
+     * @throws MojoExecutionException if an error occurs while reading
+     */
+    private List<String> compareContent(final List<String> names)
+            throws MojoExecutionException {
+
+        List<String> different = new ArrayList<String>();
+        ZipFile oldZip = null;
+        ZipFile newZip = null;
+        try {
+            oldZip = new ZipFile(baseline);
+            newZip = new ZipFile(file);
+            byte[] buf1 = new byte[BUFFER_SIZE];
+            byte[] buf2 = new byte[BUFFER_SIZE];
+            for (String name : names) {
+                ZipEntry oldEntry = oldZip.getEntry(name);
+                ZipEntry newEntry = newZip.getEntry(name);
+                InputStream in1 = oldZip.getInputStream(oldEntry);
+                InputStream in2 = newZip.getInputStream(newEntry);
+                try {
+                    if (!sameContent(in1, in2, buf1, buf2)) {
+                        different.add(name);
+                    }
+                } finally {
+                    IOUtil.close(in1);
+                    IOUtil.close(in2);
+                }
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        } finally {
+            close(oldZip);
+            close(newZip);
+        }
+        return different;
+    }
+
+    /**
+     * Compare two streams.
+     * @param in1 the first stream
+     * @param in2 the second stream
+     * @param buf1 buffer for the first stream
+     * @param buf2 buffer for the second stream
+     * @return {@code true} if both streams have the same content,
+     * {@code false} otherwise
+     * @throws IOException if an error occurs while reading
+     */
+    private static boolean sameContent(final InputStream in1,
+            final InputStream in2,
+            final byte[] buf1,
+            final byte[] buf2) throws IOException {
+
+        while (true) {
+            int n1 = fill(in1, buf1);
+            int n2 = fill(in2, buf2);
+            if (n1 != n2) {
+                return false;
+            }
+            if (n1 == 0) {
+                return true;
+            }
+            for (int i = 0; i < n1; i++) {
+                if (buf1[i] != buf2[i]) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read from a stream until a buffer is full or the end of the stream is
+     * reached.
+     * @param in the stream to read
+     * @param buf the buffer to fill
+     * @return the number of bytes read
+     * @throws IOException if an error occurs while reading
+     */
+    private static int fill(final InputStream in, final byte[] buf)
+            throws IOException {
+
+        int n = 0;
+        while (n < buf.length) {
+            int r = in.read(buf, n, buf.length - n);
+            if (r == -1) {
+                break;
+            }
+            n += r;
+        }
+        return n;
+    }
+
+    /**
+     * Write the report file.
+     * @param added the names of the added entries
+     * @param removed the names of the removed entries
+     * @param changed the names of the changed entries
+     * @param duplicated the names that occur a different number of times
+     * @param oldEntries the entries of the baseline
+     * @param newEntries the entries of the compared file
+     * @throws MojoExecutionException if an error occurs while writing
+     */
+    private void writeReport(final List<String> added,
+            final List<String> removed,
+            final List<String> changed,
+            final List<String> duplicated,
+            final Map<String, List<ZipCentralDirectory.Entry>> oldEntries,
+            final Map<String, List<ZipCentralDirectory.Entry>> newEntries)
+            throws MojoExecutionException {
+
+        Writer writer = null;
+        try {
+            reportFile.getParentFile().mkdirs();
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(reportFile), "UTF-8"));
+            writer.write(
+                    "#status\tname\toldSize\tnewSize\toldCrc\tnewCrc\n");
+            writeLines(writer, "added", added, oldEntries, newEntries);
+            writeLines(writer, "removed", removed, oldEntries, newEntries);
+            writeLines(writer, "changed", changed, oldEntries, newEntries);
+            writeLines(writer, "duplicate", duplicated, oldEntries,
+                    newEntries);
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        } finally {
+            IOUtil.close(writer);
+        }
+    }
+
+    /**
+     * Write the lines of the report for names with the same status, one
+     * line per occurrence of each name.
+     * @param writer the writer
+     * @param status the status of the entries
+     * @param names the entry names
+     * @param oldEntries the entries of the baseline
+     * @param newEntries the entries of the compared file
+     * @throws IOException if an error occurs while writing
+     */
+    private static void writeLines(final Writer writer,
+            final String status,
+            final List<String> names,
+            final Map<String, List<ZipCentralDirectory.Entry>> oldEntries,
+            final Map<String, List<ZipCentralDirectory.Entry>> newEntries)
+            throws IOException {
+
+        List<ZipCentralDirectory.Entry> none = Collections.emptyList();
+        for (String name : names) {
+            List<ZipCentralDirectory.Entry> oldList = oldEntries.get(name);
+            if (oldList == null) {
+                oldList = none;
+            }
+            List<ZipCentralDirectory.Entry> newList = newEntries.get(name);
+            if (newList == null) {
+                newList = none;
+            }
+            int count = Math.max(oldList.size(), newList.size());
+            for (int i = 0; i < count; i++) {
+                ZipCentralDirectory.Entry oldEntry = null;
+                if (i < oldList.size()) {
+                    oldEntry = oldList.get(i);
+                }
+                ZipCentralDirectory.Entry newEntry = null;
+                if (i < newList.size()) {
+                    newEntry = newList.get(i);
+                }
+                writeLine(writer, status, name, oldEntry, newEntry);
+            }
+        }
+    }
+
+    /**
+     * Write a line of the report.
+     * @param writer the writer
+     * @param status the status of the entry
+     * @param name the entry name
+     * @param oldEntry the baseline entry, may be {@code null}
+     * @param newEntry the compared entry, may be {@code null}
+     * @throws IOException if an error occurs while writing
+     */
+    private static void writeLine(final Writer writer,
+            final String status,
+            final String name,
+            final ZipCentralDirectory.Entry oldEntry,
+            final ZipCentralDirectory.Entry newEntry) throws IOException {
+
+        writer.write(status);
+        writer.write('\t');
+        writer.write(escapeIndexField(name));
+        String oldSize = "";
+        String oldCrc = "";
+        if (oldEntry != null) {
+            oldSize = Long.toString(oldEntry.getSize());
+            oldCrc = String.format("%08x", oldEntry.getCrc());
+        }
+        String newSize = "";
+        String newCrc = "";
+        if (newEntry != null) {
+            newSize = Long.toString(newEntry.getSize());
+            newCrc = String.format("%08x", newEntry.getCrc());
+        }
+        writer.write('\t');
+        writer.write(oldSize);
+        writer.write('\t');
+        writer.write(newSize);
+        writer.write('\t');
+        writer.write(oldCrc);
+        writer.write('\t');
+        writer.write(newCrc);
+        writer.write('\n');
+    }
+
+    /**
+     * Close a zip file, ignoring errors.
+     * @param zip the zip file to close, may be {@code null}
+     */
+    private static void close(final ZipFile zip) {
+        if (zip != null) {
+            try {
+                zip.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+}
@@ -43,8 +43,10 @@ package org.glassfish.build;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.handler.ArtifactHandler;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -57,8 +59,11 @@ import org.apache.maven.project.MavenProject;
 
 import org.apache.tools.ant.types.ZipFileSet;
 
+import static org.glassfish.build.utils.MavenHelper.appendZip;
+import static org.glassfish.build.utils.MavenHelper.createArtifact;
 import static org.glassfish.build.utils.MavenHelper.createZip;
 import static org.glassfish.build.utils.MavenHelper.createZipFileSet;
+import static org.glassfish.build.utils.MavenHelper.createZipIndex;
 
 /**
  * Creates a zip file.
@@ -144,6 +149,41 @@ public final class ZipMojo extends AbstractMojo {
             defaultValue = "true")
     private Boolean attach;
 
+    /**
+     * Interval in milliseconds between two progress reports.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "progressInterval",
+            defaultValue = "10000")
+    private long progressInterval;
+
+    /**
+     * Write an index of the zip entries read from its central directory.
+     * Each line of the index contains the name, size, compressed size, CRC,
+     * compression method and offset of an entry.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "index",
+            defaultValue = "false")
+    private boolean index;
+
+    /**
+     * The classifier of the index, attached with type {@code txt} when the
+     * zip is attached.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "indexClassifier",
+            defaultValue = "index")
+    private String indexClassifier;
+
+    /**
+     * Append the content to the existing zip file instead of re-creating it.
+     * Only the central directory of the existing zip file is rewritten, the
+     * duplicate behavior is applied against its entries, files identical to
+     * an existing entry of the same name are not added again. The zip is
+     * created if it does not exist.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "append",
+            defaultValue = "false")
+    private boolean append;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
 
@@ -156,9 +196,17 @@ public final class ZipMojo extends AbstractMojo {
             fsets.add(createZipFileSet(dir, includes, excludes));
         }
 
-        File target = createZip(project.getProperties(), getLog(),
-                duplicate, fsets, new File(outputDirectory,
-                        finalName + '.' + extension));
+        File target = new File(outputDirectory, finalName + '.' + extension);
+        File indexFile = new File(outputDirectory,
+                finalName + '-' + indexClassifier + ".txt");
+        if (append && target.exists()) {
+            appendZip(project.getProperties(), getLog(), duplicate, fsets,
+                    target, Collections.singletonList(indexFile));
+        } else {
+            createZip(project.getProperties(), getLog(), duplicate, fsets,
+                    target, progressInterval,
+                    Collections.singletonList(indexFile));
+        }
 
         if (attach) {
             project.getArtifact().setFile(target);
@@ -166,6 +214,18 @@ public final class ZipMojo extends AbstractMojo {
                     new DistributionArtifactHandler(extension,
                             project.getPackaging()));
         }
+
+        if (index) {
+            createZipIndex(target, indexFile);
+            getLog().info("[zip] index: " + indexFile);
+            if (attach) {
+                Artifact indexArtifact = createArtifact(project.getGroupId(),
+                        project.getArtifactId(), project.getVersion(), "txt",
+                        indexClassifier);
+                indexArtifact.setFile(indexFile);
+                project.addAttachedArtifact(indexArtifact);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,251 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import org.glassfish.build.utils.ZipCentralDirectory;
+
+/**
+ * Verifies that every entry of a zip file inflates correctly and matches the
+ * size and CRC recorded in the central directory.
+ * Entries are verified in parallel, each worker reading the zip file with its
+ * own file handle.
+ */
+@Mojo(name = "zip-verify",
+        defaultPhase = LifecyclePhase.VERIFY)
+public final class ZipVerifyMojo extends AbstractMojo {
+
+    /**
+     * Parameters property prefix.
+     */
+    private static final String PROPERTY_PREFIX = "gfzip.verify.";
+
+    /**
+     * Size of the buffer used to read the entries.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The zip file to verify.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "file",
+            defaultValue = "${project.build.directory}/"
+                    + "${project.build.finalName}.zip")
+    private File file;
+
+    /**
+     * Number of entries verified concurrently.
+     * The number of available processors is used if not strictly positive.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "threads",
+            defaultValue = "0")
+    private int threads;
+
+    /**
+     * Skip this mojo.
+     */
+    @Parameter(property = PROPERTY_PREFIX + "skip",
+            defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping zip-verify");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<ZipCentralDirectory.Entry> entries;
+        try {
+            entries = ZipCentralDirectory.read(file).getEntries();
+        } catch (IOException ex) {
+            throw new MojoFailureException(file + " is not a valid zip file: "
+                    + ex.getMessage(), ex);
+        }
+
+        int nThreads = threads;
+        if (nThreads <= 0) {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        nThreads = Math.max(1, Math.min(nThreads, entries.size()));
+
+        // contiguous ranges, so that each worker reads sequentially
+        List<Future<List<String>>> futures =
+                new ArrayList<Future<List<String>>>(nThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            int chunk = (entries.size() + nThreads - 1) / nThreads;
+            for (int i = 0; i < entries.size(); i += chunk) {
+                futures.add(executor.submit(new Verifier(entries.subList(i,
+                        Math.min(i + chunk, entries.size())))));
+            }
+            List<String> errors = new ArrayList<String>();
+            for (Future<List<String>> future : futures) {
+                errors.addAll(future.get());
+            }
+
+            getLog().info(String.format(
+                    "[zip-verify] %s: %d entries verified with %d threads"
+                    + " (%dms)", file.getName(), entries.size(), nThreads,
+                    System.currentTimeMillis() - start));
+            if (!errors.isEmpty()) {
+                StringBuilder sb = new StringBuilder();
+                sb.append(errors.size()).append(" bad entries in ")
+                        .append(file).append(':');
+                for (String error : errors) {
+                    getLog().error("[zip-verify] " + error);
+                    sb.append("\n  ").append(error);
+                }
+                throw new MojoFailureException(sb.toString());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        } catch (ExecutionException ex) {
+            throw new MojoExecutionException(ex.getCause().getMessage(),
+                    ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Verifies a range of entries with its own file handle.
+     */
+    private final class Verifier implements Callable<List<String>> {
+
+        /**
+         * The entries to verify.
+         */
+        private final List<ZipCentralDirectory.Entry> entries;
+
+        /**
+         * Create a new {@code Verifier} instance.
+         * @param range the entries to verify
+         */
+        private Verifier(final List<ZipCentralDirectory.Entry> range) {
+            this.entries = range;
+        }
+
+        @Override
+        public List<String> call() throws IOException {
+            List<String> errors = new ArrayList<String>();
+            byte[] buf = new byte[BUFFER_SIZE];
+            CRC32 crc = new CRC32();
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                for (ZipCentralDirectory.Entry entry : entries) {
+                    String error = verify(raf, entry, buf, crc);
+                    if (error != null) {
+                        errors.add(entry.getName() + ": " + error);
+                    }
+                }
+            } finally {
+                raf.close();
+            }
+            return errors;
+        }
+
+        /**
+         * Verify an entry.
+         * @param raf the zip file
+         * @param entry the entry to verify
+         * @param buf the buffer to use
+         * @param crc the checksum to use
+         * @return the error, or {@code null} if the entry is valid
+         */
+        private String verify(final RandomAccessFile raf,
+                final ZipCentralDirectory.Entry entry,
+                final byte[] buf,
+                final CRC32 crc) {
+
+            crc.reset();
+            long size = 0;
+            InputStream in = null;
+            try {
+                in = ZipCentralDirectory.getInputStream(raf, entry);
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    crc.update(buf, 0, n);
+                    size += n;
+                }
+            } catch (IOException ex) {
+                return ex.getMessage();
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ex) {
+                    }
+                }
+            }
+            if (size != entry.getSize()) {
+                return String.format("size is %d, expected %d", size,
+                        entry.getSize());
+            }
+            if (crc.getValue() != entry.getCrc()) {
+                return String.format("CRC is %08x, expected %08x",
+                        crc.getValue(), entry.getCrc());
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.resolver.filter.ScopeArtifactFilter;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Artifact filter compiled once from the filtering configuration, and
+ * evaluated in a single pass over a set of artifacts.
+ * The results are the same as the chain of transitivity, scope, type,
+ * classifier, groupId and artifactId filters of
+ * {@code maven-common-artifact-filters}.
+ */
+public final class ArtifactSetFilter {
+
+    /**
+     * The scopes accepted in the scope configuration.
+     */
+    private static final List<String> SCOPES = Arrays.asList(
+            Artifact.SCOPE_COMPILE, Artifact.SCOPE_TEST,
+            Artifact.SCOPE_PROVIDED, Artifact.SCOPE_RUNTIME,
+            Artifact.SCOPE_SYSTEM);
+
+    /**
+     * The direct dependencies, {@code null} if transitive dependencies are
+     * included.
+     */
+    private final Set<Artifact> directDependencies;
+
+    /**
+     * The included scope, {@code null} if not filtering on a single
+     * included scope.
+     */
+    private final String includeSingleScope;
+
+    /**
+     * The excluded scope, {@code null} if not filtering on a single excluded
+     * scope.
+     */
+    private final String excludeSingleScope;
+
+    /**
+     * The scope filter, {@code null} if not filtering with a scope
+     * hierarchy.
+     */
+    private final ScopeArtifactFilter scopeFilter;
+
+    /**
+     * {@code true} if {@link #scopeFilter} selects the excluded artifacts.
+     */
+    private final boolean scopeFilterExcludes;
+
+    /**
+     * The included types.
+     */
+    private final List<String> includeTypes;
+
+    /**
+     * The excluded types.
+     */
+    private final List<String> excludeTypes;
+
+    /**
+     * The included classifiers.
+     */
+    private final List<String> includeClassifiers;
+
+    /**
+     * The excluded classifiers.
+     */
+    private final List<String> excludeClassifiers;
+
+    /**
+     * The included groupId prefixes.
+     */
+    private final List<String> includeGroupIds;
+
+    /**
+     * The excluded groupId prefixes.
+     */
+    private final List<String> excludeGroupIds;
+
+    /**
+     * The included artifactIds.
+     */
+    private final List<String> includeArtifactIds;
+
+    /**
+     * The excluded artifactIds.
+     */
+    private final List<String> excludeArtifactIds;
+
+    /**
+     * Create a new {@code ArtifactSetFilter} instance.
+     * @param dependencyArtifacts the direct dependencies, {@code null} to
+     * include transitive dependencies
+     * @param includeScope the scope to include, can be empty
+     * @param excludeScope the scope to exclude, can be empty
+     * @param typeIncludes the types to include
+     * @param typeExcludes the types to exclude
+     * @param classifierIncludes the classifiers to include
+     * @param classifierExcludes the classifiers to exclude
+     * @param groupIdIncludes the groupId prefixes to include
+     * @param groupIdExcludes the groupId prefixes to exclude
+     * @param artifactIdIncludes the artifactIds to include
+     * @param artifactIdExcludes the artifactIds to exclude
+     * @throws MojoExecutionException if a scope is invalid
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private ArtifactSetFilter(final Set<Artifact> dependencyArtifacts,
+            final String includeScope,
+            final String excludeScope,
+            final List<String> typeIncludes,
+            final List<String> typeExcludes,
+            final List<String> classifierIncludes,
+            final List<String> classifierExcludes,
+            final List<String> groupIdIncludes,
+            final List<String> groupIdExcludes,
+            final List<String> artifactIdIncludes,
+            final List<String> artifactIdExcludes)
+            throws MojoExecutionException {
+
+        this.directDependencies = dependencyArtifacts;
+        String includeSingle = null;
+        String excludeSingle = null;
+        ScopeArtifactFilter saf = null;
+        boolean safExcludes = false;
+        if (StringUtils.isNotEmpty(includeScope)) {
+            if (!SCOPES.contains(includeScope)) {
+                throw new MojoExecutionException(
+                        "Invalid Scope in includeScope: " + includeScope);
+            }
+            if (isSingleScope(includeScope)) {
+                includeSingle = includeScope;
+            } else {
+                saf = new ScopeArtifactFilter(includeScope);
+            }
+        } else if (StringUtils.isNotEmpty(excludeScope)) {
+            if (!SCOPES.contains(excludeScope)) {
+                throw new MojoExecutionException(
+                        "Invalid Scope in excludeScope: " + excludeScope);
+            }
+            if (Artifact.SCOPE_TEST.equals(excludeScope)) {
+                throw new MojoExecutionException(" Can't exclude Test scope,"
+                        + " this will exclude everything.");
+            }
+            if (isSingleScope(excludeScope)) {
+                excludeSingle = excludeScope;
+            } else {
+                saf = new ScopeArtifactFilter(excludeScope);
+                safExcludes = true;
+            }
+        }
+        this.includeSingleScope = includeSingle;
+        this.excludeSingleScope = excludeSingle;
+        this.scopeFilter = saf;
+        this.scopeFilterExcludes = safExcludes;
+        this.includeTypes = typeIncludes;
+        this.excludeTypes = typeExcludes;
+        this.includeClassifiers = classifierIncludes;
+        this.excludeClassifiers = classifierExcludes;
+        this.includeGroupIds = groupIdIncludes;
+        this.excludeGroupIds = groupIdExcludes;
+        this.includeArtifactIds = artifactIdIncludes;
+        this.excludeArtifactIds = artifactIdExcludes;
+    }
+
+    /**
+     * Compile a filter.
+     * The configuration strings are comma separated lists, they can be
+     * {@code null} or empty.
+     * @param dependencyArtifacts the set of artifact representing direct
+     * dependencies
+     * @param excludeTransitive exclude transitive dependencies
+     * @param includeScope the scope to include
+     * @param excludeScope the scope to exclude, ignored if
+     * {@code includeScope} is set
+     * @param includeTypes the types to include
+     * @param excludeTypes the types to exclude
+     * @param includeClassifiers the classifiers to include
+     * @param excludeClassifiers the classifiers to exclude
+     * @param includeGroupIds the groupId prefixes to include
+     * @param excludeGroupIds the groupId prefixes to exclude
+     * @param includeArtifactIds the artifactIds to include
+     * @param excludeArtifactIds the artifactIds to exclude
+     * @return the compiled filter
+     * @throws MojoExecutionException if a scope is invalid
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public static ArtifactSetFilter compile(
+            final Set<Artifact> dependencyArtifacts,
+            final boolean excludeTransitive,
+            final String includeScope,
+            final String excludeScope,
+            final String includeTypes,
+            final String excludeTypes,
+            final String includeClassifiers,
+            final String excludeClassifiers,
+            final String includeGroupIds,
+            final String excludeGroupIds,
+            final String includeArtifactIds,
+            final String excludeArtifactIds) throws MojoExecutionException {
+
+        Set<Artifact> direct = null;
+        if (excludeTransitive) {
+            direct = new LinkedHashSet<Artifact>(dependencyArtifacts);
+        }
+        return new ArtifactSetFilter(direct,
+                MavenHelper.cleanToBeTokenizedString(includeScope),
+                MavenHelper.cleanToBeTokenizedString(excludeScope),
+                tokenize(includeTypes), tokenize(excludeTypes),
+                tokenize(includeClassifiers), tokenize(excludeClassifiers),
+                tokenize(includeGroupIds), tokenize(excludeGroupIds),
+                tokenize(includeArtifactIds), tokenize(excludeArtifactIds));
+    }
+
+    /**
+     * Filter a set of artifacts.
+     * @param artifacts the artifacts to filter
+     * @return a new set containing the included artifacts, in the iteration
+     * order of {@code artifacts}
+     */
+    public Set<Artifact> filter(final Set<Artifact> artifacts) {
+        Set<Artifact> result = new LinkedHashSet<Artifact>();
+        for (Artifact artifact : artifacts) {
+            if (include(artifact)) {
+                result.add(artifact);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Test if an artifact is included by this filter.
+     * @param artifact the artifact to test
+     * @return {@code true} if the artifact is included
+     */
+    public boolean include(final Artifact artifact) {
+        if (directDependencies != null
+                && !directDependencies.contains(artifact)) {
+            return false;
+        }
+        if (includeSingleScope != null
+                && !includeSingleScope.equals(artifact.getScope())) {
+            return false;
+        }
+        if (excludeSingleScope != null
+                && excludeSingleScope.equals(artifact.getScope())) {
+            return false;
+        }
+        if (scopeFilter != null
+                && scopeFilter.include(artifact) == scopeFilterExcludes) {
+            return false;
+        }
+        return matches(artifact.getType(), includeTypes, excludeTypes, false)
+                && matches(artifact.getClassifier(), includeClassifiers,
+                        excludeClassifiers, false)
+                && matches(artifact.getGroupId(), includeGroupIds,
+                        excludeGroupIds, true)
+                && matches(artifact.getArtifactId(), includeArtifactIds,
+                        excludeArtifactIds, false);
+    }
+
+    /**
+     * Test if a scope is filtered by exact match rather than by hierarchy.
+     * @param scope the scope
+     * @return {@code true} for the provided and system scopes
+     */
+    private static boolean isSingleScope(final String scope) {
+        return Artifact.SCOPE_PROVIDED.equals(scope)
+                || Artifact.SCOPE_SYSTEM.equals(scope);
+    }
+
+    /**
+     * Tokenize a configuration string.
+     * @param str the comma separated values
+     * @return the values
+     */
+    private static List<String> tokenize(final String str) {
+        String cleaned = MavenHelper.cleanToBeTokenizedString(str);
+        if (cleaned.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(StringUtils.split(cleaned, ","));
+    }
+
+    /**
+     * Test a feature of an artifact against includes and excludes.
+     * @param feature the artifact feature, can be {@code null}
+     * @param includes the included values, all values are included if
+     * empty
+     * @param excludes the excluded values
+     * @param prefix {@code true} to match values as prefixes
+     * @return {@code true} if the feature is included and not excluded
+     */
+    private static boolean matches(final String feature,
+            final List<String> includes,
+            final List<String> excludes,
+            final boolean prefix) {
+
+        if (!includes.isEmpty() && !matchesAny(feature, includes, prefix)) {
+            return false;
+        }
+        return excludes.isEmpty() || !matchesAny(feature, excludes, prefix);
+    }
+
+    /**
+     * Test if a feature matches any of the given values.
+     * @param feature the artifact feature, can be {@code null}
+     * @param values the values
+     * @param prefix {@code true} to match values as prefixes
+     * @return {@code true} if a value matches
+     */
+    private static boolean matchesAny(final String feature,
+            final List<String> values,
+            final boolean prefix) {
+
+        for (String value : values) {
+            if (feature == null) {
+                if (value == null) {
+                    return true;
+                }
+            } else if (prefix) {
+                if (feature.startsWith(value)) {
+                    return true;
+                }
+            } else if (feature.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
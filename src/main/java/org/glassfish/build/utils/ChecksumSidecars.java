@@ -0,0 +1,377 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Generator of checksum sidecar files (e.g. {@code foo.jar.sha1}).
+ * All the digests of a file are computed in a single read, files are
+ * processed in parallel. The checksummed files are recorded in a cache keyed
+ * by canonical path, size and last modification time ; files unchanged since
+ * their sidecars were written are not read again.
+ */
+public final class ChecksumSidecars {
+
+    /**
+     * The sidecar extensions of the supported algorithms.
+     */
+    private static final String[] EXTENSIONS = {
+        ".md5", ".sha1", ".sha256", ".sha512"
+    };
+
+    /**
+     * Size of the read buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Mask to read an unsigned byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Mask to read the low nibble of a byte.
+     */
+    private static final int NIBBLE_MASK = 0x0F;
+
+    /**
+     * Number of bits in a nibble.
+     */
+    private static final int NIBBLE_BITS = 4;
+
+    /**
+     * Hexadecimal digits.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * The cache file.
+     */
+    private final File cacheFile;
+
+    /**
+     * The cached files, keyed by canonical path.
+     */
+    private final Properties cache = new Properties();
+
+    /**
+     * Indicate if the cache needs to be saved.
+     */
+    private boolean dirty;
+
+    /**
+     * Create a new {@code ChecksumSidecars} instance.
+     * @param file the cache file
+     */
+    private ChecksumSidecars(final File file) {
+        this.cacheFile = file;
+    }
+
+    /**
+     * Load the cache of checksummed files.
+     * A missing or unreadable cache file results in an empty cache.
+     * @param file the cache file
+     * @return the loaded instance
+     */
+    public static ChecksumSidecars load(final File file) {
+        ChecksumSidecars sidecars = new ChecksumSidecars(file);
+        if (file.isFile()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                sidecars.cache.load(in);
+            } catch (IOException ex) {
+                sidecars.cache.clear();
+            } finally {
+                IOUtil.close(in);
+            }
+        }
+        return sidecars;
+    }
+
+    /**
+     * Test if a file name is the name of a checksum sidecar.
+     * @param name the file name
+     * @return {@code true} if the name ends with a sidecar extension
+     */
+    public static boolean isSidecar(final String name) {
+        for (String ext : EXTENSIONS) {
+            if (name.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the sidecar file of a file for an algorithm.
+     * @param file the checksummed file
+     * @param algorithm the digest algorithm, e.g. {@code SHA-256}
+     * @return the sidecar file
+     */
+    public static File getSidecar(final File file, final String algorithm) {
+        return new File(file.getPath() + '.'
+                + algorithm.replace("-", "").toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Write the checksum sidecars of the given files.
+     * @param files the files to checksum
+     * @param algorithms the digest algorithms
+     * @param threads the number of threads, {@code 0} to use the number of
+     * available processors
+     * @return the number of files read, files found in the cache are not
+     * read
+     * @throws IOException if an error occurs while reading or writing
+     */
+    public int generate(final List<File> files,
+            final List<String> algorithms,
+            final int threads) throws IOException {
+
+        for (String algorithm : algorithms) {
+            newDigest(algorithm);
+        }
+        final List<File> stale = new ArrayList<File>();
+        final List<String> keys = new ArrayList<String>();
+        for (File file : files) {
+            String key = file.getCanonicalPath();
+            if (!isCached(key, file, algorithms)) {
+                stale.add(file);
+                keys.add(key);
+            }
+        }
+        if (stale.isEmpty()) {
+            return 0;
+        }
+
+        int nThreads = threads;
+        if (nThreads <= 0) {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        nThreads = Math.min(nThreads, stale.size());
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            for (final File file : stale) {
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        String identity = identity(file, algorithms);
+                        String[] digests = digest(file, algorithms);
+                        for (int i = 0; i < digests.length; i++) {
+                            write(getSidecar(file, algorithms.get(i)),
+                                    digests[i]);
+                        }
+                        return identity;
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                cache.setProperty(keys.get(i), futures.get(i).get());
+                dirty = true;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex.getMessage(), ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause().getMessage(), ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return stale.size();
+    }
+
+    /**
+     * Save the cache if it was modified.
+     * @throws IOException if an error occurs while writing the cache file
+     */
+    public void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        cacheFile.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(cacheFile);
+        try {
+            cache.store(out, "checksummed files");
+        } finally {
+            IOUtil.close(out);
+        }
+        dirty = false;
+    }
+
+    /**
+     * Test if the sidecars of a file are up-to-date.
+     * @param key the cache key of the file
+     * @param file the file
+     * @param algorithms the digest algorithms
+     * @return {@code true} if the file is unchanged since its sidecars were
+     * written and the sidecars exist
+     */
+    private boolean isCached(final String key,
+            final File file,
+            final List<String> algorithms) {
+
+        if (!identity(file, algorithms).equals(cache.getProperty(key))) {
+            return false;
+        }
+        for (String algorithm : algorithms) {
+            if (!getSidecar(file, algorithm).isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compute the identity of a file recorded in the cache.
+     * @param file the file
+     * @param algorithms the digest algorithms
+     * @return the identity, made of the size, the last modification time and
+     * the algorithms
+     */
+    private static String identity(final File file,
+            final List<String> algorithms) {
+
+        return file.length() + ":" + file.lastModified() + ":" + algorithms;
+    }
+
+    /**
+     * Compute digests of a file in a single read.
+     * @param file the file
+     * @param algorithms the digest algorithms
+     * @return the digests in hexadecimal, in the order of the algorithms
+     * @throws IOException if an error occurs while reading the file
+     */
+    static String[] digest(final File file, final List<String> algorithms)
+            throws IOException {
+
+        MessageDigest[] mds = new MessageDigest[algorithms.size()];
+        for (int i = 0; i < mds.length; i++) {
+            mds[i] = newDigest(algorithms.get(i));
+        }
+        byte[] buf = new byte[BUFFER_SIZE];
+        InputStream in = new FileInputStream(file);
+        try {
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                for (MessageDigest md : mds) {
+                    md.update(buf, 0, n);
+                }
+            }
+        } finally {
+            IOUtil.close(in);
+        }
+        String[] digests = new String[mds.length];
+        for (int i = 0; i < mds.length; i++) {
+            digests[i] = toHex(mds[i].digest());
+        }
+        return digests;
+    }
+
+    /**
+     * Create a message digest.
+     * @param algorithm the digest algorithm
+     * @return the created {@code MessageDigest}
+     * @throws IOException if the algorithm is not supported
+     */
+    static MessageDigest newDigest(final String algorithm)
+            throws IOException {
+
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException("Unsupported checksum algorithm: "
+                    + algorithm, ex);
+        }
+    }
+
+    /**
+     * Convert bytes to hexadecimal.
+     * @param bytes the bytes to convert
+     * @return the hexadecimal string
+     */
+    static String toHex(final byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX[(bytes[i] & BYTE_MASK) >>> NIBBLE_BITS];
+            hex[2 * i + 1] = HEX[bytes[i] & NIBBLE_MASK];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Write a sidecar file.
+     * @param sidecar the sidecar file
+     * @param digest the digest in hexadecimal
+     * @throws IOException if an error occurs while writing
+     */
+    private static void write(final File sidecar, final String digest)
+            throws IOException {
+
+        OutputStream out = new FileOutputStream(sidecar);
+        try {
+            out.write(digest.getBytes("US-ASCII"));
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * Non recursive listing of the files of a directory.
+ * The directory is listed once, the files are then selected in memory using
+ * the same pattern matching as {@code FileUtils.getFiles} for patterns that
+ * do not contain directories, including its default excludes.
+ */
+public final class DirectoryListing {
+
+    /**
+     * The default excludes of {@code FileUtils.getFiles}, e.g. editor backup
+     * files.
+     */
+    private static final String[] DEFAULT_EXCLUDES =
+            FileUtils.getDefaultExcludes();
+
+    /**
+     * The files of the directory, sorted by name.
+     */
+    private final List<File> files;
+
+    /**
+     * Create a new {@code DirectoryListing} instance.
+     * @param dirFiles the files of the directory
+     */
+    private DirectoryListing(final List<File> dirFiles) {
+        this.files = dirFiles;
+    }
+
+    /**
+     * List the files of a directory.
+     * @param dirPath the directory to list
+     * @return the listing, empty if the directory does not exist
+     */
+    public static DirectoryListing list(final String dirPath) {
+        if (dirPath == null || dirPath.isEmpty()) {
+            throw new IllegalArgumentException("dir is null or empty");
+        }
+        File[] entries = new File(dirPath).listFiles();
+        if (entries == null) {
+            return new DirectoryListing(Collections.<File>emptyList());
+        }
+        List<File> dirFiles = new ArrayList<File>(entries.length);
+        for (File entry : entries) {
+            if (entry.isFile()) {
+                dirFiles.add(entry);
+            }
+        }
+        Collections.sort(dirFiles);
+        return new DirectoryListing(dirFiles);
+    }
+
+    /**
+     * Get the files matching inclusion and exclusion ant patterns.
+     * @param includes the includes pattern, comma separated
+     * @param excludes the excludes pattern, comma separated
+     * @return the list of files found, sorted by name
+     */
+    public List<File> getFiles(final String includes, final String excludes) {
+        String[] incl = split(includes);
+        String[] excl = split(excludes);
+        List<File> result = new ArrayList<File>();
+        for (File file : files) {
+            String name = file.getName();
+            if ((incl == null || matchesAny(incl, name))
+                    && (excl == null || !matchesAny(excl, name))
+                    && !matchesAny(DEFAULT_EXCLUDES, name)) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Split comma separated patterns.
+     * @param patterns the patterns, can be {@code null}
+     * @return the patterns, or {@code null} if {@code patterns} is
+     * {@code null}
+     */
+    private static String[] split(final String patterns) {
+        if (patterns == null) {
+            return null;
+        }
+        return StringUtils.split(patterns, ",");
+    }
+
+    /**
+     * Test if a file name matches any of the given patterns.
+     * @param patterns the patterns
+     * @param name the file name
+     * @return {@code true} if a pattern matches
+     */
+    private static boolean matchesAny(final String[] patterns,
+            final String name) {
+
+        for (String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern.trim(), name,
+                    /* isCaseSensitive */ true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,631 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+
+import static org.glassfish.build.utils.MavenHelper.readModel;
+
+/**
+ * Builds flattened effective models.
+ * The parent and import poms are resolved with {@link MavenModelResolver}
+ * and memoized for the whole repository session. An instance can be used
+ * concurrently.
+ */
+public final class EffectiveModelBuilder {
+
+    /**
+     * Maximum number of expressions interpolated in a string.
+     */
+    private static final int MAX_INTERPOLATIONS = 16;
+
+    /**
+     * The model builder.
+     */
+    private final ModelBuilder builder;
+
+    /**
+     * The repository system component.
+     */
+    private final RepositorySystem system;
+
+    /**
+     * The repository session component.
+     */
+    private final RepositorySystemSession session;
+
+    /**
+     * The remote repositories.
+     */
+    private final List<RemoteRepository> repositories;
+
+    /**
+     * Create a new {@code EffectiveModelBuilder} instance.
+     * @param repoSystem repository system component
+     * @param repoSession repository session component
+     * @param remoteRepos remote repositories to use
+     */
+    public EffectiveModelBuilder(final RepositorySystem repoSystem,
+            final RepositorySystemSession repoSession,
+            final List<RemoteRepository> remoteRepos) {
+
+        this.builder = new DefaultModelBuilderFactory().newInstance();
+        this.system = repoSystem;
+        this.session = repoSession;
+        this.repositories = remoteRepos;
+    }
+
+    /**
+     * Build the flattened effective model of a pom.
+     * The parent reference is removed.
+     * @param pomFile the pom file
+     * @return the model
+     * @throws MojoExecutionException if an error occurs while building the
+     * model
+     */
+    public Model build(final File pomFile) throws MojoExecutionException {
+        DefaultModelBuildingRequest request =
+                new DefaultModelBuildingRequest();
+        request.setPomFile(pomFile);
+        request.setModelResolver(new MavenModelResolver(system, session,
+                repositories));
+        request.setModelCache(SessionModelCache.get(session));
+        request.setValidationLevel(
+                ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
+        request.setProcessPlugins(false);
+        request.setTwoPhaseBuilding(false);
+        request.setSystemProperties(toProperties(
+                session.getSystemProperties()));
+        request.setUserProperties(toProperties(session.getUserProperties()));
+
+        Model model;
+        try {
+            model = builder.build(request).getEffectiveModel();
+        } catch (ModelBuildingException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+        model.setParent(null);
+        return model;
+    }
+
+    /**
+     * Find the files the flattened effective model of a pom is built from,
+     * without building it.
+     * The poms are read raw: the parents are searched locally with their
+     * relative path, then in the local repository like the import poms. The
+     * coordinates are interpolated with the properties of the parent chain
+     * and the user properties.
+     * @param pomFile the pom file
+     * @return the pom file followed by its parent and import pom files, or
+     * {@code null} if one of them is not available locally
+     */
+    public List<File> findInputs(final File pomFile) {
+        Set<File> files = new LinkedHashSet<File>();
+        if (!addInputs(pomFile.getAbsoluteFile(), files)) {
+            return null;
+        }
+        return new ArrayList<File>(files);
+    }
+
+    /**
+     * Add the user properties of the session to the inputs of a generated
+     * pom, in a stable order.
+     * @param inputs the inputs model
+     */
+    public void addUserProperties(final Model inputs) {
+        Map<String, String> props = new TreeMap<String, String>(
+                session.getUserProperties());
+        for (Map.Entry<String, String> entry : props.entrySet()) {
+            inputs.addProperty("user." + entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Add a pom, its parent chain and its import poms to the input files.
+     * @param pomFile the pom file
+     * @param files the input files
+     * @return {@code false} if a pom is not available locally
+     */
+    private boolean addInputs(final File pomFile, final Set<File> files) {
+        if (files.contains(pomFile)) {
+            return true;
+        }
+        List<Model> chain = new ArrayList<Model>();
+        File file = pomFile;
+        while (file != null) {
+            Model model;
+            try {
+                model = readModel(file, session);
+            } catch (MojoExecutionException ex) {
+                return false;
+            }
+            files.add(file);
+            chain.add(model);
+            Parent parent = model.getParent();
+            if (parent == null) {
+                file = null;
+            } else {
+                file = findLocalParent(file.getParentFile(), parent);
+                if (file == null) {
+                    file = findLocalPom(parent.getGroupId(),
+                            parent.getArtifactId(), parent.getVersion());
+                }
+                if (file == null) {
+                    return false;
+                }
+            }
+        }
+
+        Map<String, String> props = chainProperties(chain);
+        for (Model model : chain) {
+            DependencyManagement depMgmt = model.getDependencyManagement();
+            if (depMgmt == null) {
+                continue;
+            }
+            for (Dependency dep : depMgmt.getDependencies()) {
+                if (!"import".equals(dep.getScope())
+                        || !"pom".equals(dep.getType())) {
+                    continue;
+                }
+                File bom = findLocalPom(
+                        interpolate(dep.getGroupId(), props),
+                        interpolate(dep.getArtifactId(), props),
+                        interpolate(dep.getVersion(), props));
+                if (bom == null || !addInputs(bom, files)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the properties available to interpolate the poms of a parent
+     * chain.
+     * @param chain the models of the parent chain, child first
+     * @return the properties
+     */
+    private Map<String, String> chainProperties(final List<Model> chain) {
+        Map<String, String> props = new HashMap<String, String>();
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            Model model = chain.get(i);
+            for (String key : model.getProperties().stringPropertyNames()) {
+                props.put(key, model.getProperties().getProperty(key));
+            }
+        }
+        Model leaf = chain.get(0);
+        String groupId = leaf.getGroupId();
+        String version = leaf.getVersion();
+        if (leaf.getParent() != null) {
+            if (groupId == null) {
+                groupId = leaf.getParent().getGroupId();
+            }
+            if (version == null) {
+                version = leaf.getParent().getVersion();
+            }
+        }
+        for (String prefix : new String[]{"project.", "pom."}) {
+            props.put(prefix + "groupId", groupId);
+            props.put(prefix + "artifactId", leaf.getArtifactId());
+            props.put(prefix + "version", version);
+        }
+        props.putAll(session.getUserProperties());
+        return props;
+    }
+
+    /**
+     * Interpolate the expressions of a string.
+     * @param str the string
+     * @param props the properties
+     * @return the interpolated string, or {@code null} if an expression
+     * cannot be interpolated
+     */
+    private static String interpolate(final String str,
+            final Map<String, String> props) {
+
+        String value = str;
+        for (int i = 0; value != null && i < MAX_INTERPOLATIONS; i++) {
+            int start = value.indexOf("${");
+            if (start < 0) {
+                return value;
+            }
+            int end = value.indexOf('}', start);
+            if (end < 0) {
+                return null;
+            }
+            String replacement = props.get(value.substring(start + 2, end));
+            if (replacement == null) {
+                return null;
+            }
+            value = value.substring(0, start) + replacement
+                    + value.substring(end + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Find a pom in the local repository.
+     * @param groupId the groupId
+     * @param artifactId the artifactId
+     * @param version the version
+     * @return the pom file, or {@code null} if it is not in the local
+     * repository
+     */
+    private File findLocalPom(final String groupId,
+            final String artifactId,
+            final String version) {
+
+        if (!isResolvable(groupId, artifactId, version)) {
+            return null;
+        }
+        File file = new File(session.getLocalRepository().getBasedir(),
+                session.getLocalRepositoryManager().getPathForLocalArtifact(
+                        new DefaultArtifact(groupId, artifactId, "pom",
+                                version)));
+        if (!file.isFile()) {
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Resolve the parent and import poms of the given poms ahead of model
+     * building.
+     * The poms are parsed to find their parent and import poms, the whole
+     * closure is resolved concurrently. Parents found locally with their
+     * relative path are followed without being resolved. Resolution errors
+     * are ignored, they are reported when the models are built.
+     * @param pomFiles the pom files
+     * @param threads the number of threads, {@code 0} to use the number of
+     * available processors
+     * @return the number of poms resolved
+     * @throws MojoExecutionException if the prefetch is interrupted
+     */
+    public int prefetch(final List<File> pomFiles, final int threads)
+            throws MojoExecutionException {
+
+        final MavenModelResolver resolver = new MavenModelResolver(system,
+                session, repositories);
+        final AtomicInteger resolved = new AtomicInteger();
+        int nThreads = threads;
+        if (nThreads <= 0) {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            CompletionService<List<PrefetchItem>> completion =
+                    new ExecutorCompletionService<List<PrefetchItem>>(
+                            executor);
+            Set<String> seen = new HashSet<String>();
+            int pending = 0;
+            List<PrefetchItem> next = new ArrayList<PrefetchItem>();
+            for (File pomFile : pomFiles) {
+                next.add(new PrefetchItem(pomFile));
+            }
+            do {
+                for (final PrefetchItem item : next) {
+                    if (seen.add(item.getKey())) {
+                        completion.submit(
+                                new Callable<List<PrefetchItem>>() {
+                            @Override
+                            public List<PrefetchItem> call() {
+                                return visit(item, resolver, resolved);
+                            }
+                        });
+                        pending++;
+                    }
+                }
+                if (pending == 0) {
+                    break;
+                }
+                next = completion.take().get();
+                pending--;
+            } while (true);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        } catch (ExecutionException ex) {
+            throw new MojoExecutionException(ex.getCause().getMessage(),
+                    ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return resolved.get();
+    }
+
+    /**
+     * Read a pom to prefetch and find its parent and import poms.
+     * @param item the pom to read
+     * @param resolver the resolver used to resolve the remote poms
+     * @param resolved the count of resolved poms
+     * @return the parent and import poms, empty if the pom cannot be read
+     */
+    private List<PrefetchItem> visit(final PrefetchItem item,
+            final MavenModelResolver resolver,
+            final AtomicInteger resolved) {
+
+        List<PrefetchItem> next = new ArrayList<PrefetchItem>();
+        Model model;
+        File dir = null;
+        try {
+            if (item.getFile() != null) {
+                model = readModel(item.getFile(), session);
+                dir = item.getFile().getParentFile();
+            } else {
+                FileModelSource source = resolver.resolveModel(
+                        item.getGroupId(), item.getArtifactId(),
+                        item.getVersion());
+                resolved.incrementAndGet();
+                model = readModel(source.getFile(), session);
+            }
+        } catch (MojoExecutionException ex) {
+            return next;
+        } catch (UnresolvableModelException ex) {
+            return next;
+        }
+
+        Parent parent = model.getParent();
+        if (parent != null && isResolvable(parent.getGroupId(),
+                parent.getArtifactId(), parent.getVersion())) {
+            File localParent = null;
+            if (dir != null) {
+                localParent = findLocalParent(dir, parent);
+            }
+            if (localParent != null) {
+                next.add(new PrefetchItem(localParent));
+            } else {
+                next.add(new PrefetchItem(parent.getGroupId(),
+                        parent.getArtifactId(), parent.getVersion()));
+            }
+        }
+
+        DependencyManagement depMgmt = model.getDependencyManagement();
+        if (depMgmt != null) {
+            for (Dependency dep : depMgmt.getDependencies()) {
+                if ("import".equals(dep.getScope())
+                        && "pom".equals(dep.getType())
+                        && isResolvable(dep.getGroupId(),
+                                dep.getArtifactId(), dep.getVersion())) {
+                    next.add(new PrefetchItem(dep.getGroupId(),
+                            dep.getArtifactId(), dep.getVersion()));
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Find the parent of a local pom using its relative path.
+     * @param dir the directory of the local pom
+     * @param parent the parent
+     * @return the parent pom file, or {@code null} if not found locally
+     */
+    private File findLocalParent(final File dir, final Parent parent) {
+        File file = new File(dir, parent.getRelativePath());
+        if (file.isDirectory()) {
+            file = new File(file, "pom.xml");
+        }
+        if (!file.isFile()) {
+            return null;
+        }
+        Model model;
+        try {
+            model = readModel(file, session);
+        } catch (MojoExecutionException ex) {
+            return null;
+        }
+        String groupId = model.getGroupId();
+        String version = model.getVersion();
+        if (model.getParent() != null) {
+            if (groupId == null) {
+                groupId = model.getParent().getGroupId();
+            }
+            if (version == null) {
+                version = model.getParent().getVersion();
+            }
+        }
+        if (parent.getGroupId().equals(groupId)
+                && parent.getArtifactId().equals(model.getArtifactId())
+                && parent.getVersion().equals(version)) {
+            return file;
+        }
+        return null;
+    }
+
+    /**
+     * Test if coordinates can be resolved without interpolation.
+     * @param groupId the groupId
+     * @param artifactId the artifactId
+     * @param version the version
+     * @return {@code true} if the coordinates are set and do not contain
+     * expressions
+     */
+    private static boolean isResolvable(final String groupId,
+            final String artifactId,
+            final String version) {
+
+        for (String str : new String[]{groupId, artifactId, version}) {
+            if (str == null || str.contains("${")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Convert a map of strings to properties.
+     * @param map the map to convert
+     * @return the properties
+     */
+    private static Properties toProperties(final Map<String, String> map) {
+        Properties props = new Properties();
+        props.putAll(map);
+        return props;
+    }
+
+    /**
+     * A pom to prefetch, either a local file or remote coordinates.
+     */
+    private static final class PrefetchItem {
+
+        /**
+         * The local pom file, {@code null} for remote coordinates.
+         */
+        private final File file;
+
+        /**
+         * The groupId of the remote pom.
+         */
+        private final String groupId;
+
+        /**
+         * The artifactId of the remote pom.
+         */
+        private final String artifactId;
+
+        /**
+         * The version of the remote pom.
+         */
+        private final String version;
+
+        /**
+         * Create a new {@code PrefetchItem} instance for a local pom.
+         * @param pomFile the local pom file
+         */
+        private PrefetchItem(final File pomFile) {
+            this.file = pomFile.getAbsoluteFile();
+            this.groupId = null;
+            this.artifactId = null;
+            this.version = null;
+        }
+
+        /**
+         * Create a new {@code PrefetchItem} instance for a remote pom.
+         * @param gid the groupId
+         * @param aid the artifactId
+         * @param ver the version
+         */
+        private PrefetchItem(final String gid,
+                final String aid,
+                final String ver) {
+
+            this.file = null;
+            this.groupId = gid;
+            this.artifactId = aid;
+            this.version = ver;
+        }
+
+        /**
+         * Get the local pom file.
+         * @return the file, {@code null} for remote coordinates
+         */
+        File getFile() {
+            return file;
+        }
+
+        /**
+         * Get the groupId of the remote pom.
+         * @return the groupId
+         */
+        String getGroupId() {
+            return groupId;
+        }
+
+        /**
+         * Get the artifactId of the remote pom.
+         * @return the artifactId
+         */
+        String getArtifactId() {
+            return artifactId;
+        }
+
+        /**
+         * Get the version of the remote pom.
+         * @return the version
+         */
+        String getVersion() {
+            return version;
+        }
+
+        /**
+         * Get the key identifying this pom.
+         * @return the key
+         */
+        String getKey() {
+            if (file != null) {
+                return file.getPath();
+            }
+            return groupId + ':' + artifactId + ':' + version;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Read the entries of a zip file through a memory mapping.
+ * The file is mapped in chunks, the chunk is moved forward as the entries
+ * are read so that files larger than 2GB can be read as well ; entries are
+ * expected to be read in increasing offset order.
+ * Stored entries are written directly from the mapped buffer, deflated
+ * entries are inflated from the mapped buffer.
+ * A chunk is unmapped as soon as the next one is mapped and when the reader
+ * is closed.
+ */
+final class MappedZipReader {
+
+    /**
+     * Local file header signature.
+     */
+    private static final int LFH_SIG = 0x04034b50;
+
+    /**
+     * Length of the fixed part of the local file header.
+     */
+    private static final int LFH_LEN = 30;
+
+    /**
+     * Offset of the file name length in the local file header.
+     */
+    private static final int LFH_NAME_LEN_OFFSET = 26;
+
+    /**
+     * Offset of the extra field length in the local file header.
+     */
+    private static final int LFH_EXTRA_LEN_OFFSET = 28;
+
+    /**
+     * Mask to read an unsigned short.
+     */
+    private static final int SHORT_MASK = 0xFFFF;
+
+    /**
+     * Minimum size of a mapped chunk.
+     */
+    private static final long CHUNK_SIZE = 0x10000000L;
+
+    /**
+     * Size of the inflater buffers.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The zip file channel.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The size of the zip file.
+     */
+    private final long fileSize;
+
+    /**
+     * The inflater, re-used for all entries.
+     */
+    private final Inflater inflater = new Inflater(/* nowrap */ true);
+
+    /**
+     * Inflater input buffer.
+     */
+    private final byte[] inBuf = new byte[BUFFER_SIZE];
+
+    /**
+     * Inflater output buffer.
+     */
+    private final byte[] outBuf = new byte[BUFFER_SIZE];
+
+    /**
+     * The current mapped chunk.
+     */
+    private MappedByteBuffer chunk;
+
+    /**
+     * The offset of the current mapped chunk.
+     */
+    private long chunkOffset;
+
+    /**
+     * Create a new {@code MappedZipReader} instance.
+     * @param zipChannel the zip file channel
+     * @throws IOException if the size of the file cannot be read
+     */
+    MappedZipReader(final FileChannel zipChannel) throws IOException {
+        this.channel = zipChannel;
+        this.fileSize = zipChannel.size();
+    }
+
+    /**
+     * Map the compressed data of an entry.
+     * The returned buffer is only valid until the next call to this method
+     * or to {@link #close()}, since the chunk it belongs to may be unmapped.
+     * @param entry the entry
+     * @return the compressed data, or {@code null} if the entry is too large
+     * to be mapped
+     * @throws IOException if an error occurs while reading the local header
+     */
+    ByteBuffer map(final ZipCentralDirectory.Entry entry) throws IOException {
+        if (entry.getCompressedSize() > Integer.MAX_VALUE) {
+            return null;
+        }
+        ByteBuffer header = region(entry.getOffset(), LFH_LEN);
+        if (header.getInt(0) != LFH_SIG) {
+            throw new ZipException("invalid local file header for "
+                    + entry.getName());
+        }
+        long dataOffset = entry.getOffset() + LFH_LEN
+                + (header.getShort(LFH_NAME_LEN_OFFSET) & SHORT_MASK)
+                + (header.getShort(LFH_EXTRA_LEN_OFFSET) & SHORT_MASK);
+        return region(dataOffset, entry.getCompressedSize());
+    }
+
+    /**
+     * Write the uncompressed data of an entry to a file.
+     * @param entry the entry
+     * @param data the compressed data returned by {@link #map}
+     * @param out the destination file
+     * @throws IOException if an error occurs while reading or writing
+     */
+    void write(final ZipCentralDirectory.Entry entry,
+            final ByteBuffer data,
+            final FileOutputStream out) throws IOException {
+
+        if (entry.getMethod() == ZipEntry.STORED) {
+            FileChannel outChannel = out.getChannel();
+            while (data.hasRemaining()) {
+                outChannel.write(data);
+            }
+        } else if (entry.getMethod() == ZipEntry.DEFLATED) {
+            inflate(entry, data, out);
+        } else {
+            throw new ZipException("unsupported compression method "
+                    + entry.getMethod() + " for " + entry.getName());
+        }
+    }
+
+    /**
+     * Release the resources of this reader.
+     * The current chunk is unmapped so that the zip file is not left locked
+     * on platforms that forbid deleting mapped files, if the JVM does not
+     * allow it the mapping is released when garbage collected.
+     */
+    void close() {
+        inflater.end();
+        unmap(chunk);
+        chunk = null;
+    }
+
+    /**
+     * Inflate the data of an entry.
+     * @param entry the entry
+     * @param data the compressed data
+     * @param out the output stream
+     * @throws IOException if an error occurs while inflating or writing
+     */
+    private void inflate(final ZipCentralDirectory.Entry entry,
+            final ByteBuffer data,
+            final OutputStream out) throws IOException {
+
+        inflater.reset();
+        boolean dummy = false;
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (data.hasRemaining()) {
+                        int len = Math.min(inBuf.length, data.remaining());
+                        data.get(inBuf, 0, len);
+                        inflater.setInput(inBuf, 0, len);
+                    } else if (!dummy) {
+                        // the nowrap inflater may need an extra byte
+                        inBuf[0] = 0;
+                        inflater.setInput(inBuf, 0, 1);
+                        dummy = true;
+                    } else {
+                        throw new ZipException("truncated data for "
+                                + entry.getName());
+                    }
+                }
+                int n = inflater.inflate(outBuf);
+                if (n > 0) {
+                    out.write(outBuf, 0, n);
+                } else if (inflater.needsDictionary()) {
+                    throw new ZipException("invalid data for "
+                            + entry.getName());
+                }
+            }
+        } catch (DataFormatException ex) {
+            throw new ZipException(ex.getMessage() + " for "
+                    + entry.getName());
+        }
+    }
+
+    /**
+     * Get a region of the file, the current chunk is moved forward if it
+     * does not contain the region.
+     * @param pos the position of the region
+     * @param len the length of the region
+     * @return a little-endian buffer of the region
+     * @throws IOException if an error occurs while mapping the file
+     */
+    private ByteBuffer region(final long pos, final long len)
+            throws IOException {
+
+        if (pos + len > fileSize) {
+            throw new ZipException("entry data beyond end of file");
+        }
+        if (chunk == null || pos < chunkOffset
+                || pos + len > chunkOffset + chunk.capacity()) {
+            long size = Math.min(Math.max(len, CHUNK_SIZE), fileSize - pos);
+            unmap(chunk);
+            // never unmap twice if the new mapping fails
+            chunk = null;
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+            chunkOffset = pos;
+        }
+        ByteBuffer region = chunk.duplicate();
+        region.position((int) (pos - chunkOffset));
+        region.limit((int) (pos - chunkOffset + len));
+        return region.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Unmap a buffer, the buffer must not be used afterwards.
+     * This relies on JDK internals and is a no-op if they are not
+     * accessible, the mapping is then released when garbage collected.
+     * @param buffer the buffer to unmap, may be {@code null}
+     */
+    private static void unmap(final MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+                        ByteBuffer.class);
+            } catch (NoSuchMethodException ex) {
+                invokeCleaner = null;
+            }
+            if (invokeCleaner != null) {
+                // Java 9 and later
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+                return;
+            }
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ClassNotFoundException ex) {
+            // not supported by this JVM
+        } catch (NoSuchMethodException ex) {
+            // not supported by this JVM
+        } catch (NoSuchFieldException ex) {
+            // not supported by this JVM
+        } catch (IllegalAccessException ex) {
+            // not supported by this JVM
+        } catch (InvocationTargetException ex) {
+            // not supported by this JVM
+        } catch (RuntimeException ex) {
+            // e.g. inaccessible module
+        }
+    }
+}
@@ -39,18 +39,31 @@
  */
 package org.glassfish.build.utils;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DefaultArtifact;
@@ -63,14 +76,6 @@ import org.apache.maven.model.io.DefaultModelReader;
 import org.apache.maven.model.io.DefaultModelWriter;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
-import org.apache.maven.shared.artifact.filter.collection.ArtifactFilterException;
-import org.apache.maven.shared.artifact.filter.collection.ArtifactIdFilter;
-import org.apache.maven.shared.artifact.filter.collection.ClassifierFilter;
-import org.apache.maven.shared.artifact.filter.collection.FilterArtifacts;
-import org.apache.maven.shared.artifact.filter.collection.GroupIdFilter;
-import org.apache.maven.shared.artifact.filter.collection.ProjectTransitivityFilter;
-import org.apache.maven.shared.artifact.filter.collection.ScopeFilter;
-import org.apache.maven.shared.artifact.filter.collection.TypeFilter;
 
 import org.apache.tools.ant.types.ZipFileSet;
 
@@ -78,6 +83,8 @@ import org.codehaus.plexus.archiver.ArchiverException;
 import org.codehaus.plexus.archiver.UnArchiver;
 import org.codehaus.plexus.archiver.manager.ArchiverManager;
 import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
+import org.codehaus.plexus.components.io.fileselectors.FileInfo;
+import org.codehaus.plexus.components.io.fileselectors.FileSelector;
 import org.codehaus.plexus.components.io.fileselectors.IncludeExcludeFileSelector;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
@@ -86,6 +93,7 @@ import org.codehaus.plexus.util.WriterFactory;
 
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
@@ -96,6 +104,41 @@ import org.eclipse.aether.resolution.ArtifactResult;
  */
 public final class MavenHelper {
 
+    /**
+     * Unpacker that extracts zip files with the built-in extractor and
+     * other archives with the plexus {@code UnArchiver}.
+     */
+    public static final String UNPACKER_ZIP = "zip";
+
+    /**
+     * Unpacker that extracts zip files with the built-in extractor without
+     * memory mapping the zip file, and other archives with the plexus
+     * {@code UnArchiver}.
+     */
+    public static final String UNPACKER_ZIP_STREAM = "zip-stream";
+
+    /**
+     * Unpacker that extracts all archives with the plexus
+     * {@code UnArchiver}.
+     */
+    public static final String UNPACKER_UNARCHIVER = "unarchiver";
+
+    /**
+     * Maximum number of models kept per session by {@link #readModel}.
+     */
+    private static final int MODEL_CACHE_SIZE = 256;
+
+    /**
+     * Load factor of the models cache.
+     */
+    private static final float MODEL_CACHE_LOAD_FACTOR = 0.75f;
+
+    /**
+     * The key of the models cache in the repository session data.
+     */
+    private static final Object MODEL_CACHE_KEY =
+            MavenHelper.class.getName() + ".models";
+
     /**
      * Cannot be instantiated.
      */
@@ -111,13 +154,75 @@ public final class MavenHelper {
     public static Model readModel(final File pom)
             throws MojoExecutionException {
 
+        return readModel(pom, null);
+    }
+
+    /**
+     * Reads a given model.
+     * The parsed models are cached in the repository session, a pom file is
+     * parsed again only if its size or modification time changed.
+     * @param pom the pom File
+     * @param session the repository session, {@code null} to not use the
+     * cache
+     * @return an instance of Model, owned by the caller
+     * @throws MojoExecutionException if an {@code IOException} occurs
+     */
+    public static Model readModel(final File pom,
+            final RepositorySystemSession session)
+            throws MojoExecutionException {
+
         try {
-           return new DefaultModelReader().read(pom, null);
+            if (session == null) {
+                return new DefaultModelReader().read(pom, null);
+            }
+            Map<String, Model> cache = getModelCache(session);
+            String key = pom.getCanonicalPath() + '|' + pom.length() + '|'
+                    + pom.lastModified();
+            Model model = cache.get(key);
+            if (model == null) {
+                model = new DefaultModelReader().read(pom, null);
+                cache.put(key, model);
+            }
+            return model.clone();
         } catch (IOException ex) {
             throw new MojoExecutionException(ex.getMessage(), ex);
         }
     }
 
+    /**
+     * Get the models cache of a repository session, created if needed.
+     * The least recently used models are evicted.
+     * @param session the repository session
+     * @return the cache
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Model> getModelCache(
+            final RepositorySystemSession session) {
+
+        SessionData data = session.getData();
+        while (true) {
+            Object cache = data.get(MODEL_CACHE_KEY);
+            if (cache != null) {
+                return (Map<String, Model>) cache;
+            }
+            Map<String, Model> created = Collections.synchronizedMap(
+                    new LinkedHashMap<String, Model>(MODEL_CACHE_SIZE,
+                            MODEL_CACHE_LOAD_FACTOR, /* accessOrder */ true) {
+
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(
+                                final Map.Entry<String, Model> eldest) {
+                            return size() > MODEL_CACHE_SIZE;
+                        }
+                    });
+            if (data.set(MODEL_CACHE_KEY, null, created)) {
+                return created;
+            }
+        }
+    }
+
     /**
      * Get the final name of a project artifact from a {@code Model} instance.
      * @param model the model
@@ -162,6 +267,25 @@ public final class MavenHelper {
         if (dir == null || dir.isEmpty()) {
             throw new IllegalArgumentException("dir is null or empty");
         }
+        return createAttachedArtifacts(DirectoryListing.list(dir), artifact,
+                model);
+    }
+
+    /**
+     * Create a list of attached artifacts and their associated files by
+     * searching for <code>${project.build.finalName}-*.*</code> in a
+     * listing of {@code project.build.directory}.
+     * @param listing the listing of ${project.build.directory}
+     * @param artifact the main artifact for which corresponding attached
+     * artifacts will be searched
+     * @param model an instance of model
+     * @return the list of attached artifacts
+     */
+    public static List<Artifact> createAttachedArtifacts(
+            final DirectoryListing listing,
+            final Artifact artifact,
+            final Model model) {
+
         if (artifact == null) {
             throw new IllegalArgumentException("artifact is null");
         }
@@ -180,7 +304,7 @@ public final class MavenHelper {
             finalName = getFinalName(model);
         }
 
-        List<File> attachedFiles = getFiles(dir, finalName + "*.*",
+        List<File> attachedFiles = listing.getFiles(finalName + "*.*",
                 artifactName);
         List<Artifact> attachedArtifacts = new ArrayList<Artifact>();
         if (!attachedFiles.isEmpty()) {
@@ -238,20 +362,15 @@ public final class MavenHelper {
     /**
      * Search for a file matching an artifact for the given {@code finalName}
      * and model.
-     * @param dir the directory to search
+     * @param listing the listing of the directory to search
      * @param finalName the artifact final name
      * @param model the project model
      * @return the {@code Artifact} instance
-     * @throws MojoExecutionException if an error occurred while searching
-     * files
      */
-    private static Artifact getArtifactFile(final String dir,
+    private static Artifact getArtifactFile(final DirectoryListing listing,
             final String finalName,
-            final Model model) throws MojoExecutionException {
+            final Model model) {
 
-        if (dir == null || dir.isEmpty()) {
-            throw new IllegalArgumentException("dir is null or empty");
-        }
         if (finalName == null || finalName.isEmpty()) {
             throw new IllegalArgumentException("finalName is null");
         }
@@ -259,7 +378,8 @@ public final class MavenHelper {
             throw new IllegalArgumentException("model is null");
         }
 
-        List<File> files = getFiles(dir, finalName + ".*", finalName + "-*.");
+        List<File> files = listing.getFiles(finalName + ".*",
+                finalName + "-*.");
         Map<String, File> extensionMap =
                 new HashMap<String, File>(files.size());
         for (File file : files) {
@@ -301,11 +421,29 @@ public final class MavenHelper {
     public static Artifact createArtifact(final String dir, final Model model)
             throws MojoExecutionException {
 
+        if (dir == null || dir.isEmpty()) {
+            throw new IllegalArgumentException("dir is null or empty");
+        }
+        return createArtifact(DirectoryListing.list(dir), model);
+    }
+
+    /**
+     * Create an artifact and its associated file by searching for
+     * <code>${project.build.finalName}.${project.packaging}</code> in a
+     * listing of {@code project.build.directory}.
+     * @param listing the listing of ${project.build.directory}
+     * @param model an instance of model
+     * @return the created {@code Artifact} instance
+     */
+    public static Artifact createArtifact(final DirectoryListing listing,
+            final Model model) {
+
         // resolving using finalName
-        Artifact artifact = getArtifactFile(dir, getFinalName(model), model);
+        Artifact artifact = getArtifactFile(listing, getFinalName(model),
+                model);
         if (artifact == null) {
             // resolving using artifactId
-            artifact = getArtifactFile(dir, model.getArtifactId(), model);
+            artifact = getArtifactFile(listing, model.getArtifactId(), model);
         }
         return artifact;
     }
@@ -320,13 +458,22 @@ public final class MavenHelper {
     public static File getPomInTarget(final String dir)
             throws MojoExecutionException {
 
+        return getPomInTarget(DirectoryListing.list(dir));
+    }
+
+    /**
+     * Returns the pom found in a listing of target or null if not found.
+     * @param listing the listing of ${project.build.directory}
+     * @return an instance of the pom file or null if not found
+     */
+    public static File getPomInTarget(final DirectoryListing listing) {
         // check for an existing .pom
-         List<File> poms = getFiles(dir, /* includes */ "*.pom",
-                 /* excludes */ "");
-         if (!poms.isEmpty()) {
+        List<File> poms = listing.getFiles(/* includes */ "*.pom",
+                /* excludes */ "");
+        if (!poms.isEmpty()) {
             return poms.get(0);
-         }
-         return null;
+        }
+        return null;
     }
 
     /**
@@ -489,6 +636,99 @@ public final class MavenHelper {
         model.setPomFile(pomFile);
     }
 
+    /**
+     * Write a model to a file, preceded by the header of a source pom.
+     * The header is made of the lines of the source pom before the
+     * {@code project} element, the XML declaration written for the model is
+     * omitted. The header is copied as bytes with its line terminators
+     * replaced by {@code \n}, the model is written in UTF-8.
+     * @param model the model to write
+     * @param source the pom file to copy the header from
+     * @param target the file to write
+     * @throws MojoExecutionException if an IOException occurred
+     */
+    public static void writeGeneratedPom(final Model model,
+            final File source,
+            final File target) throws MojoExecutionException {
+
+        target.getParentFile().mkdirs();
+        OutputStream out = null;
+        try {
+            out = new BufferedOutputStream(new FileOutputStream(target));
+            copyPomHeader(source, out);
+            Writer writer = new OutputStreamWriter(
+                    new SkipFirstLineOutputStream(out), "UTF-8");
+            new DefaultModelWriter().write(writer, /* options */ null, model);
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * Copy the lines of a pom file that precede the {@code project} element.
+     * @param pom the pom file
+     * @param out the output stream
+     * @throws IOException if an error occurs while reading or writing
+     */
+    private static void copyPomHeader(final File pom, final OutputStream out)
+            throws IOException {
+
+        byte[] project = "<project".getBytes("US-ASCII");
+        InputStream in = new BufferedInputStream(new FileInputStream(pom));
+        try {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            boolean skipLf = false;
+            int c;
+            while ((c = in.read()) != -1) {
+                if (skipLf) {
+                    skipLf = false;
+                    if (c == '\n') {
+                        continue;
+                    }
+                }
+                if (c == '\n' || c == '\r') {
+                    if (startsWith(line.toByteArray(), project)) {
+                        return;
+                    }
+                    line.writeTo(out);
+                    out.write('\n');
+                    line.reset();
+                    skipLf = c == '\r';
+                } else {
+                    line.write(c);
+                }
+            }
+            if (line.size() > 0 && !startsWith(line.toByteArray(), project)) {
+                line.writeTo(out);
+                out.write('\n');
+            }
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Test if an array of bytes starts with a prefix.
+     * @param bytes the bytes to test
+     * @param prefix the prefix
+     * @return {@code true} if {@code bytes} starts with {@code prefix}
+     */
+    private static boolean startsWith(final byte[] bytes,
+            final byte[] prefix) {
+
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Read a model as a {@code String}.
      * @param model the model
@@ -601,42 +841,106 @@ public final class MavenHelper {
             final String includeArtifactIds,
             final String excludeArtifactIds) throws MojoExecutionException {
 
+        return ArtifactSetFilter.compile(dependencyArtifacts,
+                excludeTransitive, includeScope, excludeScope, includeTypes,
+                excludeTypes, includeClassifiers, excludeClassifiers,
+                includeGroupIds, excludeGroupIds, includeArtifactIds,
+                excludeArtifactIds).filter(artifacts);
+    }
 
-        FilterArtifacts filter = new FilterArtifacts();
-
-        filter.addFilter(new ProjectTransitivityFilter(
-                dependencyArtifacts,
-                excludeTransitive));
-
-        filter.addFilter(new ScopeFilter(
-                cleanToBeTokenizedString(includeScope),
-                cleanToBeTokenizedString(excludeScope)));
+    /**
+     * Unpacks a given file with the plexus {@code UnArchiver}.
+     * @param file the file to unpack
+     * @param location the directory where to unpack
+     * @param includes includes pattern for the files to unpack
+     * @param excludes exclude pattern for the files to unpack
+     * @param silent log unpack or not
+     * @param log the Maven logger instance, can be null
+     * @param archiverManager an instance of ArchiveManager
+     * @throws MojoExecutionException if an error occurred while unpacking
+     */
+    public static void unpack(final File file,
+            final File location,
+            final String includes,
+            final String excludes,
+            final boolean silent,
+            final Log log,
+            final ArchiverManager archiverManager)
+            throws MojoExecutionException {
 
-        filter.addFilter(new TypeFilter(
-                cleanToBeTokenizedString(includeTypes),
-                cleanToBeTokenizedString(excludeTypes)));
+        unpack(file, location, includes, excludes, silent, log,
+                archiverManager, 1, /* skipIdentical */ false,
+                UNPACKER_UNARCHIVER);
+    }
 
-        filter.addFilter(new ClassifierFilter(
-                cleanToBeTokenizedString(includeClassifiers),
-                cleanToBeTokenizedString(excludeClassifiers)));
+    /**
+     * Unpacks a given file.
+     * Zip files are extracted with the given number of threads, other
+     * archives are always extracted with a single thread.
+     * @param file the file to unpack
+     * @param location the directory where to unpack
+     * @param includes includes pattern for the files to unpack
+     * @param excludes exclude pattern for the files to unpack
+     * @param silent log unpack or not
+     * @param log the Maven logger instance, can be null
+     * @param archiverManager an instance of ArchiveManager
+     * @param threads the number of threads used to extract zip files,
+     * {@code 0} to use the number of available processors
+     * @throws MojoExecutionException if an error occurred while unpacking
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public static void unpack(final File file,
+            final File location,
+            final String includes,
+            final String excludes,
+            final boolean silent,
+            final Log log,
+            final ArchiverManager archiverManager,
+            final int threads)
+            throws MojoExecutionException {
 
-        filter.addFilter(new GroupIdFilter(
-                cleanToBeTokenizedString(includeGroupIds),
-                cleanToBeTokenizedString(excludeGroupIds)));
+        unpack(file, location, includes, excludes, silent, log,
+                archiverManager, threads, /* skipIdentical */ false);
+    }
 
-        filter.addFilter(new ArtifactIdFilter(
-                cleanToBeTokenizedString(includeArtifactIds),
-                cleanToBeTokenizedString(excludeArtifactIds)));
+    /**
+     * Unpacks a given file.
+     * Zip files are extracted with the given number of threads, other
+     * archives are always extracted with a single thread.
+     * @param file the file to unpack
+     * @param location the directory where to unpack
+     * @param includes includes pattern for the files to unpack
+     * @param excludes exclude pattern for the files to unpack
+     * @param silent log unpack or not
+     * @param log the Maven logger instance, can be null
+     * @param archiverManager an instance of ArchiveManager
+     * @param threads the number of threads used to extract zip files,
+     * {@code 0} to use the number of available processors
+     * @param skipIdentical {@code true} to leave untouched the existing files
+     * that have the same size and CRC-32 as the zip entry, other archives
+     * are always fully extracted
+     * @throws MojoExecutionException if an error occurred while unpacking
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public static void unpack(final File file,
+            final File location,
+            final String includes,
+            final String excludes,
+            final boolean silent,
+            final Log log,
+            final ArchiverManager archiverManager,
+            final int threads,
+            final boolean skipIdentical)
+            throws MojoExecutionException {
 
-        try {
-            return filter.filter(artifacts);
-        } catch (ArtifactFilterException e) {
-            throw new MojoExecutionException(e.getMessage(), e);
-        }
+        unpack(file, location, includes, excludes, silent, log,
+                archiverManager, threads, skipIdentical, UNPACKER_ZIP);
     }
 
     /**
      * Unpacks a given file.
+     * Zip files are extracted with the given number of threads, other
+     * archives are always extracted with a single thread.
      * @param file the file to unpack
      * @param location the directory where to unpack
      * @param includes includes pattern for the files to unpack
@@ -644,45 +948,59 @@ public final class MavenHelper {
      * @param silent log unpack or not
      * @param log the Maven logger instance, can be null
      * @param archiverManager an instance of ArchiveManager
+     * @param threads the number of threads used to extract zip files,
+     * {@code 0} to use the number of available processors
+     * @param skipIdentical {@code true} to leave untouched the existing files
+     * that have the same size and CRC-32 as the zip entry, other archives
+     * are always fully extracted
+     * @param unpacker {@link #UNPACKER_ZIP} to extract zip files with the
+     * built-in extractor, {@link #UNPACKER_ZIP_STREAM} to do so without
+     * memory mapping the zip files, or {@link #UNPACKER_UNARCHIVER} to
+     * extract all archives with the plexus {@code UnArchiver}, in which case
+     * {@code threads} and {@code skipIdentical} are ignored
      * @throws MojoExecutionException if an error occurred while unpacking
      */
+    @SuppressWarnings("checkstyle:ParameterNumber")
     public static void unpack(final File file,
             final File location,
             final String includes,
             final String excludes,
             final boolean silent,
             final Log log,
-            final ArchiverManager archiverManager)
+            final ArchiverManager archiverManager,
+            final int threads,
+            final boolean skipIdentical,
+            final String unpacker)
             throws MojoExecutionException {
 
+        boolean zip = UNPACKER_ZIP.equals(unpacker)
+                || UNPACKER_ZIP_STREAM.equals(unpacker);
+        if (!zip && !UNPACKER_UNARCHIVER.equals(unpacker)) {
+            throw new MojoExecutionException("Unsupported unpacker: "
+                    + unpacker);
+        }
+
         if (log != null && log.isInfoEnabled() && !silent) {
             log.info(logUnpack(file, location, includes, excludes));
         }
 
         location.mkdirs();
 
+        IncludeExcludeFileSelector selector = createFileSelector(includes,
+                excludes);
+        if (zip && unpackZip(file, location, selector, threads,
+                skipIdentical, UNPACKER_ZIP.equals(unpacker), silent, log)) {
+            return;
+        }
+
         try {
             UnArchiver unArchiver = archiverManager.getUnArchiver(file);
             unArchiver.setSourceFile(file);
             unArchiver.setDestDirectory(location);
-
-            if (StringUtils.isNotEmpty(excludes)
-                    || StringUtils.isNotEmpty(includes)) {
-
-                IncludeExcludeFileSelector[] selectors =
-                        new IncludeExcludeFileSelector[]{
-                    new IncludeExcludeFileSelector()
-                };
-
-                if (StringUtils.isNotEmpty(excludes)) {
-                    selectors[0].setExcludes(excludes.split(","));
-                }
-                if (StringUtils.isNotEmpty(includes)) {
-                    selectors[0].setIncludes(includes.split(","));
-                }
-                unArchiver.setFileSelectors(selectors);
+            if (selector != null) {
+                unArchiver.setFileSelectors(
+                        new IncludeExcludeFileSelector[]{selector});
             }
-
             unArchiver.extract();
         } catch (NoSuchArchiverException e) {
             throw new MojoExecutionException("Unknown archiver type", e);
@@ -693,6 +1011,267 @@ public final class MavenHelper {
         }
     }
 
+    /**
+     * Unpacks a zip file using its central directory, only the data of the
+     * selected entries is read.
+     * @param file the file to unpack
+     * @param location the directory where to unpack
+     * @param selector the selector of the entries to unpack, may be
+     * {@code null}
+     * @param threads the number of threads
+     * @param skipIdentical {@code true} to leave identical files untouched
+     * @param mapped {@code true} to read the zip file through a memory
+     * mapping, {@code false} to read it with streams
+     * @param silent log the unpack summary at debug level
+     * @param log the Maven logger instance, can be null
+     * @return {@code false} if the file is not a zip file that can be
+     * unpacked this way
+     * @throws MojoExecutionException if an error occurred while unpacking
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private static boolean unpackZip(final File file,
+            final File location,
+            final IncludeExcludeFileSelector selector,
+            final int threads,
+            final boolean skipIdentical,
+            final boolean mapped,
+            final boolean silent,
+            final Log log)
+            throws MojoExecutionException {
+
+        List<ZipCentralDirectory.Entry> entries;
+        try {
+            entries = selectEntries(file, ZipCentralDirectory.read(file),
+                    selector);
+        } catch (IOException ex) {
+            // not a zip file, let the unarchiver handle it
+            return false;
+        }
+        if (!ZipExtractor.isSupported(entries)) {
+            return false;
+        }
+        try {
+            ZipExtractor extractor = new ZipExtractor(file, location);
+            extractor.setSkipIdentical(skipIdentical);
+            extractor.setMapped(mapped);
+            int written = extractor.extract(entries, threads);
+            if (log != null) {
+                String msg = "Unpacked " + file.getName() + ": " + written
+                        + " file(s) written, " + extractor.getSkipped()
+                        + " identical file(s) skipped";
+                if (silent) {
+                    log.debug(msg);
+                } else {
+                    log.info(msg);
+                }
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException(
+                    "Error unpacking file: " + file + " to: " + location
+                            + "\r\n" + ex.toString(), ex);
+        }
+        return true;
+    }
+
+    /**
+     * Get the entries of a central directory that are selected by a file
+     * selector.
+     * @param archive the zip file, used to read the entries contents if
+     * requested by the selector
+     * @param cd the central directory of the zip file
+     * @param selector the selector, may be {@code null}
+     * @return the selected entries
+     * @throws IOException if an error occurs while evaluating the selector
+     */
+    static List<ZipCentralDirectory.Entry> selectEntries(final File archive,
+            final ZipCentralDirectory cd,
+            final FileSelector selector) throws IOException {
+
+        if (selector == null) {
+            return cd.getEntries();
+        }
+        List<ZipCentralDirectory.Entry> selected =
+                new ArrayList<ZipCentralDirectory.Entry>();
+        for (ZipCentralDirectory.Entry entry : cd.getEntries()) {
+            if (selector.isSelected(new EntryFileInfo(archive, entry))) {
+                selected.add(entry);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Create a file selector for the given patterns.
+     * @param includes comma separated include patterns, may be {@code null}
+     * @param excludes comma separated exclude patterns, may be {@code null}
+     * @return the created selector, or {@code null} if there is no pattern
+     */
+    static IncludeExcludeFileSelector createFileSelector(
+            final String includes,
+            final String excludes) {
+
+        if (StringUtils.isEmpty(excludes) && StringUtils.isEmpty(includes)) {
+            return null;
+        }
+        IncludeExcludeFileSelector selector = new IncludeExcludeFileSelector();
+        if (StringUtils.isNotEmpty(excludes)) {
+            selector.setExcludes(excludes.split(","));
+        }
+        if (StringUtils.isNotEmpty(includes)) {
+            selector.setIncludes(includes.split(","));
+        }
+        return selector;
+    }
+
+    /**
+     * Get the names of the files of a zip archive that are selected by the
+     * given patterns, without extracting the archive.
+     * @param archive the zip archive
+     * @param includes comma separated include patterns, may be {@code null}
+     * @param excludes comma separated exclude patterns, may be {@code null}
+     * @return the names of the selected files, directories are excluded
+     * @throws MojoExecutionException if an error occurred while reading the
+     * archive
+     */
+    public static List<String> getArchiveFiles(final File archive,
+            final String includes,
+            final String excludes) throws MojoExecutionException {
+
+        IncludeExcludeFileSelector selector = createFileSelector(includes,
+                excludes);
+        try {
+            List<ZipCentralDirectory.Entry> entries = selectEntries(archive,
+                    ZipCentralDirectory.read(archive), selector);
+            List<String> files = new ArrayList<String>(entries.size());
+            for (ZipCentralDirectory.Entry entry : entries) {
+                if (!entry.isDirectory()) {
+                    files.add(entry.getName());
+                }
+            }
+            return files;
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Output stream that drops everything up to the first line feed, the
+     * line feed itself is written.
+     */
+    private static final class SkipFirstLineOutputStream
+            extends FilterOutputStream {
+
+        /**
+         * Indicate if the first line feed has not been written yet.
+         */
+        private boolean skipping = true;
+
+        /**
+         * Create a new {@code SkipFirstLineOutputStream} instance.
+         * @param out the underlying output stream
+         */
+        private SkipFirstLineOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (skipping) {
+                if (b != '\n') {
+                    return;
+                }
+                skipping = false;
+            }
+            out.write(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException {
+
+            if (!skipping) {
+                out.write(b, off, len);
+                return;
+            }
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    skipping = false;
+                    out.write(b, i, off + len - i);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@code FileInfo} implementation for a central directory entry, used to
+     * match entries against file selectors.
+     */
+    private static final class EntryFileInfo implements FileInfo {
+
+        /**
+         * The zip file.
+         */
+        private final File archive;
+
+        /**
+         * The entry.
+         */
+        private final ZipCentralDirectory.Entry entry;
+
+        /**
+         * Create a new {@code EntryFileInfo} instance.
+         * @param zipFile the zip file
+         * @param zipEntry the entry
+         */
+        private EntryFileInfo(final File zipFile,
+                final ZipCentralDirectory.Entry zipEntry) {
+
+            this.archive = zipFile;
+            this.entry = zipEntry;
+        }
+
+        @Override
+        public String getName() {
+            return entry.getName();
+        }
+
+        @Override
+        public InputStream getContents() throws IOException {
+            final ZipFile zipFile = new ZipFile(archive);
+            ZipEntry zipEntry = zipFile.getEntry(entry.getName());
+            if (zipEntry == null) {
+                zipFile.close();
+                throw new IOException("Entry not found: " + entry.getName());
+            }
+            return new FilterInputStream(zipFile.getInputStream(zipEntry)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        zipFile.close();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public boolean isFile() {
+            return !entry.isDirectory();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return entry.isDirectory();
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return false;
+        }
+    }
+
     /**
      * Create the logging message for an unpack invocation.
      * @param file the file being unpacked
@@ -757,10 +1336,8 @@ public final class MavenHelper {
             final List<RemoteRepository> remoteRepos)
             throws MojoExecutionException {
 
-        ArtifactRequest request = new ArtifactRequest();
-        request.setArtifact(new org.eclipse.aether.artifact.DefaultArtifact(
-                groupId, artifactId, classifier, type, version));
-        request.setRepositories(remoteRepos);
+        ArtifactRequest request = createArtifactRequest(groupId, artifactId,
+                classifier, type, version, remoteRepos);
 
         ArtifactResult result;
         try {
@@ -771,6 +1348,31 @@ public final class MavenHelper {
         return result;
     }
 
+    /**
+     * Create a request to resolve a remote artifact using aether.
+     * @param groupId the group identifier of the artifact, may be {@code null}
+     * @param artifactId the artifact identifier of the artifact, may be
+     * {@code null}
+     * @param classifier the classifier of the artifact, may be {@code null}
+     * @param type the type of the artifact, may be {@code null}
+     * @param version the version of the artifact, may be {@code null}
+     * @param remoteRepos the remote repositories to use
+     * @return the created request
+     */
+    public static ArtifactRequest createArtifactRequest(final String groupId,
+            final String artifactId,
+            final String classifier,
+            final String type,
+            final String version,
+            final List<RemoteRepository> remoteRepos) {
+
+        ArtifactRequest request = new ArtifactRequest();
+        request.setArtifact(new org.eclipse.aether.artifact.DefaultArtifact(
+                groupId, artifactId, classifier, type, version));
+        request.setRepositories(remoteRepos);
+        return request;
+    }
+
     /**
      * Clean the pattern string for future regexp usage.
      * @param str the string to cleanup
@@ -896,4 +1498,194 @@ public final class MavenHelper {
         ZipHelper.getInstance().zip(props, log, duplicate, fsets, target);
         return target;
     }
+
+    /**
+     * Create a zip file.
+     * @param props Ant project properties
+     * @param log Maven logger
+     * @param duplicate behavior for duplicate file, one of "add", "preserve"
+     * or "fail"
+     * @param fsets list of {@code ZipFileSet} that describe the resources to
+     * zip
+     * @param target the {@code File} instance for the zip file to create
+     * @param progressInterval interval in milliseconds between two progress
+     * reports
+     * @return the target file
+     */
+    public static File createZip(final Properties props,
+            final Log log,
+            final String duplicate,
+            final List<ZipFileSet> fsets,
+            final File target,
+            final long progressInterval) {
+
+        ZipHelper.getInstance().zip(props, log, duplicate, fsets, target,
+                progressInterval);
+        return target;
+    }
+
+    /**
+     * Create a zip file.
+     * @param props Ant project properties
+     * @param log Maven logger
+     * @param duplicate behavior for duplicate file, one of "add", "preserve"
+     * or "fail"
+     * @param fsets list of {@code ZipFileSet} that describe the resources to
+     * zip
+     * @param target the {@code File} instance for the zip file to create
+     * @param progressInterval interval in milliseconds between two progress
+     * reports
+     * @param skipped files not to add if found in the file sets, the target
+     * is always skipped
+     * @return the target file
+     */
+    public static File createZip(final Properties props,
+            final Log log,
+            final String duplicate,
+            final List<ZipFileSet> fsets,
+            final File target,
+            final long progressInterval,
+            final List<File> skipped) {
+
+        ZipHelper.getInstance().zip(props, log, duplicate, fsets, target,
+                progressInterval, skipped);
+        return target;
+    }
+
+    /**
+     * Append to an existing zip file without rewriting its entries.
+     * @param props Ant project properties
+     * @param log Maven logger
+     * @param duplicate behavior for duplicate file, one of "add", "preserve"
+     * or "fail", applied against the existing entries
+     * @param fsets list of {@code ZipFileSet} that describe the resources to
+     * add
+     * @param target the zip file to append to
+     * @param skipped files not to add if found in the file sets, the target
+     * is always skipped
+     * @return the target file
+     * @throws MojoExecutionException if an error occurred while appending
+     */
+    public static File appendZip(final Properties props,
+            final Log log,
+            final String duplicate,
+            final List<ZipFileSet> fsets,
+            final File target,
+            final List<File> skipped) throws MojoExecutionException {
+
+        try {
+            ZipHelper.getInstance().append(props, log, duplicate, fsets,
+                    target, skipped);
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+        return target;
+    }
+
+    /**
+     * Merge the selected entries of zip files into a new zip file, without
+     * uncompressing the entries.
+     * @param log Maven logger
+     * @param duplicate behavior for duplicate files, one of "preserve" (the
+     * first entry wins), "overwrite" (the last entry wins) or "fail"
+     * @param archives the zip files to merge, in order
+     * @param includes comma separated include patterns, may be {@code null}
+     * @param excludes comma separated exclude patterns, may be {@code null}
+     * @param target the zip file to create
+     * @return the target file
+     * @throws MojoExecutionException if an error occurred while merging
+     */
+    public static File mergeZips(final Log log,
+            final String duplicate,
+            final List<File> archives,
+            final String includes,
+            final String excludes,
+            final File target) throws MojoExecutionException {
+
+        try {
+            ZipHelper.getInstance().merge(log, duplicate, archives,
+                    createFileSelector(includes, excludes), target);
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+        return target;
+    }
+
+    /**
+     * Create an index of the entries of a zip file.
+     * The index is read from the central directory of the zip file and
+     * contains one line per entry with the following tab separated fields:
+     * name, size, compressed size, CRC-32 (hexadecimal), compression method
+     * and offset of the local file header. Backslashes, tabs, carriage
+     * returns and line feeds in the names are escaped as {@code \\},
+     * {@code \t}, {@code \r} and {@code \n}.
+     * @param zipFile the zip file to index
+     * @param indexFile the index file to create
+     * @return the index file
+     * @throws MojoExecutionException if an error occurred while reading the
+     * zip file or writing the index
+     */
+    public static File createZipIndex(final File zipFile,
+            final File indexFile) throws MojoExecutionException {
+
+        Writer writer = null;
+        try {
+            ZipCentralDirectory cd = ZipCentralDirectory.read(zipFile);
+            indexFile.getParentFile().mkdirs();
+            writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(indexFile), "UTF-8"));
+            writer.write(
+                    "#name\tsize\tcompressedSize\tcrc\tmethod\toffset\n");
+            for (ZipCentralDirectory.Entry entry : cd.getEntries()) {
+                writer.write(escapeIndexField(entry.getName()));
+                writer.write('\t');
+                writer.write(Long.toString(entry.getSize()));
+                writer.write('\t');
+                writer.write(Long.toString(entry.getCompressedSize()));
+                writer.write('\t');
+                writer.write(String.format("%08x", entry.getCrc()));
+                writer.write('\t');
+                writer.write(Integer.toString(entry.getMethod()));
+                writer.write('\t');
+                writer.write(Long.toString(entry.getOffset()));
+                writer.write('\n');
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        } finally {
+            IOUtil.close(writer);
+        }
+        return indexFile;
+    }
+
+    /**
+     * Escape a field of a zip index or report: backslashes, tabs and line
+     * separators are escaped with a backslash.
+     * @param field the field to escape
+     * @return the escaped field
+     */
+    public static String escapeIndexField(final String field) {
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+                    break;
+            }
+        }
+        return sb.toString();
+    }
 }
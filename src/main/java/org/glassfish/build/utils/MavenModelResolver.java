@@ -44,11 +44,12 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.maven.model.Parent;
 import org.apache.maven.model.Repository;
 import org.apache.maven.model.building.FileModelSource;
-import org.apache.maven.model.building.ModelSource;
 import org.apache.maven.model.resolution.InvalidRepositoryException;
 import org.apache.maven.model.resolution.ModelResolver;
 import org.apache.maven.model.resolution.UnresolvableModelException;
@@ -56,6 +57,7 @@ import org.apache.maven.repository.internal.ArtifactDescriptorUtils;
 
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactRequest;
@@ -64,18 +66,36 @@ import org.eclipse.aether.artifact.DefaultArtifact;
 
 /**
  * A model resolver that can resolve remote artifacts during model resolution.
+ * The resolved models are memoized for the whole repository session, keyed by
+ * coordinates and remote repositories. The repository lists are copy-on-write
+ * and shared between copies, copies can be used concurrently.
  */
 final class MavenModelResolver implements ModelResolver {
 
     /**
-     * List of remote repositories.
+     * The key of the resolved models cache in the session data.
      */
-    private final List<RemoteRepository> repositories;
+    private static final Object CACHE_KEY = MavenModelResolver.class;
 
     /**
-     * The repository IDs of the remote repositories.
+     * List of remote repositories, never modified.
      */
-    private final Set<String> repositoryIds;
+    private volatile List<RemoteRepository> repositories;
+
+    /**
+     * The repository IDs of the remote repositories, never modified.
+     */
+    private volatile Set<String> repositoryIds;
+
+    /**
+     * The cache key identifying the remote repositories.
+     */
+    private volatile String repositoriesKey;
+
+    /**
+     * The resolved models shared by the session.
+     */
+    private final ConcurrentMap<String, FileModelSource> cache;
 
     /**
      * The repository system component.
@@ -99,42 +119,86 @@ final class MavenModelResolver implements ModelResolver {
 
         this.system = repoSystem;
         this.session = repoSession;
-        this.repositories = new ArrayList<RemoteRepository>(remoteRepos);
-        this.repositoryIds = new HashSet<String>();
-        for (RemoteRepository repository : repositories) {
-            repositoryIds.add(repository.getId());
-        }
+        this.cache = getCache(repoSession);
+        setRepositories(new ArrayList<RemoteRepository>(remoteRepos));
     }
 
     /**
-     * Copy constructor.
+     * Copy constructor, the repository lists are shared.
      * @param clone the instance to copy
      */
     private MavenModelResolver(final MavenModelResolver clone) {
         this.system = clone.system;
         this.session = clone.session;
-        this.repositories = new ArrayList<RemoteRepository>(clone.repositories);
-        this.repositoryIds = new HashSet<String>(clone.repositoryIds);
+        this.cache = clone.cache;
+        synchronized (clone) {
+            this.repositories = clone.repositories;
+            this.repositoryIds = clone.repositoryIds;
+            this.repositoriesKey = clone.repositoriesKey;
+        }
+    }
+
+    /**
+     * Get the resolved models cache of a repository session, created if
+     * needed.
+     * @param repoSession the repository session
+     * @return the cache
+     */
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<String, FileModelSource> getCache(
+            final RepositorySystemSession repoSession) {
+
+        SessionData data = repoSession.getData();
+        while (true) {
+            Object cache = data.get(CACHE_KEY);
+            if (cache != null) {
+                return (ConcurrentMap<String, FileModelSource>) cache;
+            }
+            ConcurrentMap<String, FileModelSource> created =
+                    new ConcurrentHashMap<String, FileModelSource>();
+            if (data.set(CACHE_KEY, null, created)) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * Replace the remote repositories.
+     * @param repos the new remote repositories, not modified afterwards
+     */
+    private void setRepositories(final List<RemoteRepository> repos) {
+        Set<String> ids = new HashSet<String>();
+        StringBuilder key = new StringBuilder();
+        for (RemoteRepository repository : repos) {
+            ids.add(repository.getId());
+            key.append('|').append(repository.getId())
+                    .append('=').append(repository.getUrl());
+        }
+        this.repositories = Collections.unmodifiableList(repos);
+        this.repositoryIds = Collections.unmodifiableSet(ids);
+        this.repositoriesKey = key.toString();
     }
 
     @Override
-    public void addRepository(final Repository repository,
+    public synchronized void addRepository(final Repository repository,
             final boolean replace)
             throws InvalidRepositoryException {
 
-        if (!replace && repositoryIds.contains(repository.getId())) {
-            return;
-        }
-        if (!repositoryIds.add(repository.getId())) {
+        boolean exists = repositoryIds.contains(repository.getId());
+        if (exists && !replace) {
             return;
         }
 
         List<RemoteRepository> newRepositories =
-                Collections.singletonList(
+                new ArrayList<RemoteRepository>(repositories.size() + 1);
+        for (RemoteRepository remoteRepository : repositories) {
+            if (!remoteRepository.getId().equals(repository.getId())) {
+                newRepositories.add(remoteRepository);
+            }
+        }
+        newRepositories.add(
                 ArtifactDescriptorUtils.toRemoteRepository(repository));
-
-        repositoryIds.add(repository.getId());
-        repositories.addAll(newRepositories);
+        setRepositories(newRepositories);
     }
 
     @Override
@@ -150,16 +214,27 @@ final class MavenModelResolver implements ModelResolver {
     }
 
     @Override
-    public ModelSource resolveModel(final String groupId,
+    public FileModelSource resolveModel(final String groupId,
                   final String artifactId,
             final String version)
             throws UnresolvableModelException {
 
+        List<RemoteRepository> repos;
+        String key;
+        synchronized (this) {
+            repos = repositories;
+            key = groupId + ':' + artifactId + ':' + version + repositoriesKey;
+        }
+        FileModelSource source = cache.get(key);
+        if (source != null) {
+            return source;
+        }
+
         Artifact artifact = new DefaultArtifact(groupId, artifactId, "pom",
                 version);
         try {
             ArtifactRequest request = new ArtifactRequest(artifact,
-                    repositories, /* context */ null);
+                    repos, /* context */ null);
             artifact = system.resolveArtifact(session, request).getArtifact();
         } catch (ArtifactResolutionException e) {
             throw new UnresolvableModelException(
@@ -168,11 +243,16 @@ final class MavenModelResolver implements ModelResolver {
                             groupId, artifactId, version, e.getMessage()),
                     groupId, artifactId, version, e);
         }
-        return new FileModelSource(artifact.getFile());
+        source = new FileModelSource(artifact.getFile());
+        FileModelSource previous = cache.putIfAbsent(key, source);
+        if (previous != null) {
+            return previous;
+        }
+        return source;
     }
 
     @Override
-    public ModelSource resolveModel(final Parent parent)
+    public FileModelSource resolveModel(final Parent parent)
             throws UnresolvableModelException {
 
         return resolveModel(parent.getGroupId(), parent.getArtifactId(),
@@ -0,0 +1,311 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Persistent cache of artifacts known to be absent from the remote
+ * repositories.
+ * Each artifact is recorded with the time it was found missing, and is
+ * considered missing until the time-to-live expires.
+ */
+public final class MissingArtifactCache {
+
+    /**
+     * The cache file.
+     */
+    private final File file;
+
+    /**
+     * The time-to-live in milliseconds.
+     */
+    private final long ttl;
+
+    /**
+     * The cached artifacts, keyed by coordinates, with the time they were
+     * found missing.
+     */
+    private final Properties entries = new Properties();
+
+    /**
+     * The entries recorded since the cache was loaded.
+     */
+    private final Properties added = new Properties();
+
+    /**
+     * The entries removed since the cache was loaded.
+     */
+    private final Set<String> removed = new HashSet<String>();
+
+    /**
+     * Indicate if the cache needs to be saved.
+     */
+    private boolean dirty;
+
+    /**
+     * Create a new {@code MissingArtifactCache} instance.
+     * @param cacheFile the cache file
+     * @param ttlMillis the time-to-live of the entries in milliseconds
+     */
+    private MissingArtifactCache(final File cacheFile, final long ttlMillis) {
+        this.file = cacheFile;
+        this.ttl = ttlMillis;
+    }
+
+    /**
+     * Load a cache, expired entries are discarded.
+     * A missing or unreadable cache file results in an empty cache.
+     * @param cacheFile the cache file
+     * @param ttlMillis the time-to-live of the entries in milliseconds
+     * @return the loaded cache
+     */
+    public static MissingArtifactCache load(final File cacheFile,
+            final long ttlMillis) {
+
+        MissingArtifactCache cache = new MissingArtifactCache(cacheFile,
+                ttlMillis);
+        readEntries(cacheFile, cache.entries);
+        if (removeExpired(cache.entries, ttlMillis)) {
+            cache.dirty = true;
+        }
+        return cache;
+    }
+
+    /**
+     * Read the entries of a cache file.
+     * A missing or unreadable cache file results in no entries.
+     * @param cacheFile the cache file
+     * @param props the properties to read the entries into
+     */
+    private static void readEntries(final File cacheFile,
+            final Properties props) {
+
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        InputStream in = null;
+        try {
+            in = new FileInputStream(cacheFile);
+            props.load(in);
+        } catch (IOException ex) {
+            props.clear();
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Remove the expired entries.
+     * @param props the entries
+     * @param ttlMillis the time-to-live in milliseconds
+     * @return {@code true} if entries were removed
+     */
+    private static boolean removeExpired(final Properties props,
+            final long ttlMillis) {
+
+        boolean expired = false;
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Object, Object>> it = props.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Object, Object> entry = it.next();
+            if (isExpired((String) entry.getValue(), now, ttlMillis)) {
+                it.remove();
+                expired = true;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Test if an entry timestamp is expired.
+     * @param timestamp the entry timestamp
+     * @param now the current time
+     * @param ttlMillis the time-to-live in milliseconds
+     * @return {@code true} if the entry is expired or invalid
+     */
+    private static boolean isExpired(final String timestamp,
+            final long now,
+            final long ttlMillis) {
+
+        try {
+            return now - Long.parseLong(timestamp) > ttlMillis;
+        } catch (NumberFormatException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Test if an artifact is known to be missing.
+     * @param coords the artifact coordinates
+     * @return {@code true} if the artifact is known to be missing
+     */
+    public boolean isMissing(final String coords) {
+        return entries.containsKey(coords);
+    }
+
+    /**
+     * Test if an artifact is known to be missing and is not available in
+     * the local repository.
+     * An artifact found locally is recorded as present.
+     * @param coords the artifact coordinates
+     * @param localFile the artifact file in the local repository
+     * @return {@code true} if the artifact is known to be missing
+     */
+    public boolean isMissing(final String coords, final File localFile) {
+        if (!isMissing(coords)) {
+            return false;
+        }
+        if (localFile.isFile()) {
+            setPresent(coords);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record an artifact as missing.
+     * @param coords the artifact coordinates
+     */
+    public void setMissing(final String coords) {
+        String timestamp = String.valueOf(System.currentTimeMillis());
+        entries.setProperty(coords, timestamp);
+        added.setProperty(coords, timestamp);
+        removed.remove(coords);
+        dirty = true;
+    }
+
+    /**
+     * Record an artifact as present.
+     * @param coords the artifact coordinates
+     */
+    public void setPresent(final String coords) {
+        added.remove(coords);
+        if (entries.remove(coords) != null) {
+            removed.add(coords);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Save the cache if it was modified.
+     * The changes made since the cache was loaded are merged with the
+     * current content of the cache file, while holding a lock shared by the
+     * builds that use the same cache file. The file is written to a unique
+     * temporary file first, and then renamed.
+     * @throws IOException if an error occurs while writing the cache file
+     */
+    public void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        file.getParentFile().mkdirs();
+        // file locks are held by the JVM, serialize the threads first
+        synchronized (MissingArtifactCache.class) {
+            RandomAccessFile lockFile = new RandomAccessFile(
+                    new File(file.getPath() + ".lock"), "rw");
+            try {
+                FileLock lock = lockFile.getChannel().lock();
+                try {
+                    Properties merged = new Properties();
+                    readEntries(file, merged);
+                    for (String coords : removed) {
+                        merged.remove(coords);
+                    }
+                    merged.putAll(added);
+                    removeExpired(merged, ttl);
+                    write(merged);
+                    entries.clear();
+                    entries.putAll(merged);
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                lockFile.close();
+            }
+        }
+        added.clear();
+        removed.clear();
+        dirty = false;
+    }
+
+    /**
+     * Write the cache file.
+     * @param props the entries to write
+     * @throws IOException if an error occurs while writing the cache file
+     */
+    private void write(final Properties props) throws IOException {
+        File tmp = File.createTempFile(file.getName(), ".tmp",
+                file.getParentFile());
+        try {
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                props.store(out, "artifacts missing from remote repositories");
+            } finally {
+                IOUtil.close(out);
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("Unable to rename " + tmp + " to "
+                            + file);
+                }
+            }
+        } finally {
+            if (tmp.exists()) {
+                tmp.delete();
+            }
+        }
+    }
+}
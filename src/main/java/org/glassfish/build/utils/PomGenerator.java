@@ -0,0 +1,579 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Developer;
+import org.apache.maven.model.IssueManagement;
+import org.apache.maven.model.License;
+import org.apache.maven.model.MailingList;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Organization;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Scm;
+import org.apache.maven.model.io.DefaultModelWriter;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.IOUtil;
+
+import static org.glassfish.build.utils.MavenHelper.getCommaSeparatedList;
+import static org.glassfish.build.utils.MavenHelper.readModel;
+
+/**
+ * Generates poms from other poms.
+ * The configuration common to all the generated poms is set once, the
+ * generator can then be used concurrently to create the model of each pom.
+ */
+public final class PomGenerator {
+
+    /**
+     * The generated poms parent.
+     */
+    private Parent parent;
+
+    /**
+     * The generated poms scm.
+     */
+    private Scm scm;
+
+    /**
+     * The generated poms issueManagement.
+     */
+    private IssueManagement issueManagement;
+
+    /**
+     * The generated poms mailingLists.
+     */
+    private List<MailingList> mailingLists;
+
+    /**
+     * The generated poms developers.
+     */
+    private List<Developer> developers;
+
+    /**
+     * The generated poms licenses.
+     */
+    private List<License> licenses;
+
+    /**
+     * The generated poms organization.
+     */
+    private Organization organization;
+
+    /**
+     * Wildcard for the parts of a dependency exclusion.
+     */
+    private static final String WILDCARD = "*";
+
+    /**
+     * Digest algorithm of the inputs fingerprints.
+     */
+    private static final String FINGERPRINT_ALGORITHM = "SHA-1";
+
+    /**
+     * Buffer size used to read the input pom files.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The comma separated list of exclusions for the dependencies.
+     */
+    private final String exclusions;
+
+    /**
+     * The comma separated list of scopes of the dependencies to exclude.
+     */
+    private final String scopes;
+
+    /**
+     * The artifactIds of the dependencies to exclude.
+     */
+    private final Set<String> artifactIdExclusions = new HashSet<String>();
+
+    /**
+     * The groupIds of the dependencies to exclude.
+     */
+    private final Set<String> groupIdExclusions = new HashSet<String>();
+
+    /**
+     * The {@code groupId:artifactId} of the dependencies to exclude.
+     */
+    private final Set<String> keyExclusions = new HashSet<String>();
+
+    /**
+     * Indicate if all the dependencies are excluded.
+     */
+    private boolean excludeAll;
+
+    /**
+     * The scopes of the dependencies to exclude.
+     */
+    private final Set<String> scopeExclusions = new HashSet<String>();
+
+    /**
+     * The number of dependencies kept.
+     */
+    private final AtomicInteger kept = new AtomicInteger();
+
+    /**
+     * The number of dependencies excluded by a pattern.
+     */
+    private final AtomicInteger excludedByPattern = new AtomicInteger();
+
+    /**
+     * The number of dependencies excluded by scope.
+     */
+    private final AtomicInteger excludedByScope = new AtomicInteger();
+
+    /**
+     * Create a new {@code PomGenerator} instance.
+     * The dependency exclusions are of the form {@code artifactId},
+     * {@code groupId:artifactId}, {@code groupId:*}, {@code *:artifactId}
+     * or {@code *}.
+     * @param excludeDependencies comma separated list of exclusions for the
+     * dependencies
+     * @param excludeDependencyScopes comma separated list of scopes of the
+     * dependencies to exclude
+     */
+    public PomGenerator(final String excludeDependencies,
+            final String excludeDependencyScopes) {
+
+        this.exclusions = excludeDependencies;
+        this.scopes = excludeDependencyScopes;
+        for (String exclusion : getCommaSeparatedList(excludeDependencies)) {
+            addExclusion(exclusion.trim());
+        }
+        for (String scope : getCommaSeparatedList(excludeDependencyScopes)) {
+            if (!scope.trim().isEmpty()) {
+                scopeExclusions.add(scope.trim());
+            }
+        }
+    }
+
+    /**
+     * Add a dependency exclusion.
+     * @param exclusion the exclusion
+     */
+    private void addExclusion(final String exclusion) {
+        if (exclusion.isEmpty()) {
+            return;
+        }
+        int ind = exclusion.indexOf(':');
+        if (ind < 0) {
+            if (WILDCARD.equals(exclusion)) {
+                excludeAll = true;
+            } else {
+                artifactIdExclusions.add(exclusion);
+            }
+            return;
+        }
+        String groupId = exclusion.substring(0, ind);
+        String artifactId = exclusion.substring(ind + 1);
+        if (WILDCARD.equals(groupId)) {
+            addExclusion(artifactId);
+        } else if (WILDCARD.equals(artifactId)) {
+            groupIdExclusions.add(groupId);
+        } else {
+            keyExclusions.add(exclusion);
+        }
+    }
+
+    /**
+     * Test if a dependency matches one of the exclusions.
+     * @param dependency the dependency to test
+     * @return {@code true} if the dependency is excluded
+     */
+    private boolean isExcluded(final Dependency dependency) {
+        return excludeAll
+                || artifactIdExclusions.contains(dependency.getArtifactId())
+                || groupIdExclusions.contains(dependency.getGroupId())
+                || (!keyExclusions.isEmpty()
+                        && keyExclusions.contains(dependency.getGroupId()
+                                + ":" + dependency.getArtifactId()));
+    }
+
+    /**
+     * Filter the excluded dependencies.
+     * @param dependencies the dependencies to filter, not modified
+     * @return a new list containing the dependencies that are not excluded
+     */
+    public List<Dependency> filter(final List<Dependency> dependencies) {
+        List<Dependency> filtered = new ArrayList<Dependency>(
+                dependencies.size());
+        for (Dependency d : dependencies) {
+            if (isExcluded(d)) {
+                excludedByPattern.incrementAndGet();
+            } else if (scopeExclusions.contains(d.getScope())) {
+                excludedByScope.incrementAndGet();
+            } else {
+                filtered.add(d);
+            }
+        }
+        kept.addAndGet(filtered.size());
+        return filtered;
+    }
+
+    /**
+     * Get the number of dependencies kept.
+     * @return the number of dependencies
+     */
+    public int getKept() {
+        return kept.get();
+    }
+
+    /**
+     * Get the number of dependencies excluded by a pattern.
+     * @return the number of dependencies
+     */
+    public int getExcludedByPattern() {
+        return excludedByPattern.get();
+    }
+
+    /**
+     * Get the number of dependencies excluded by scope.
+     * @return the number of dependencies
+     */
+    public int getExcludedByScope() {
+        return excludedByScope.get();
+    }
+
+    /**
+     * Validate that a {@code String} is non {@code null} and non empty.
+     * @param str the {@code String} to validate
+     * @return {@code true} if str is valid, {@code false} otherwise
+     */
+    private static boolean validateString(final String str) {
+        return str != null && !str.isEmpty();
+    }
+
+    /**
+     * Set the generated poms parent, ignored if incomplete.
+     * @param pomParent the parent, may be {@code null}
+     */
+    public void setParent(final Parent pomParent) {
+        if (pomParent != null && validateString(pomParent.getGroupId())
+                && validateString(pomParent.getArtifactId())
+                && validateString(pomParent.getVersion())) {
+            this.parent = pomParent;
+        } else {
+            this.parent = null;
+        }
+    }
+
+    /**
+     * Set the generated poms scm.
+     * @param pomScm the scm
+     */
+    public void setScm(final Scm pomScm) {
+        this.scm = pomScm;
+    }
+
+    /**
+     * Set the generated poms issueManagement.
+     * @param pomIssueManagement the issueManagement
+     */
+    public void setIssueManagement(final IssueManagement pomIssueManagement) {
+        this.issueManagement = pomIssueManagement;
+    }
+
+    /**
+     * Set the generated poms mailingLists.
+     * @param pomMailingLists the mailingLists
+     */
+    public void setMailingLists(final List<MailingList> pomMailingLists) {
+        this.mailingLists = pomMailingLists;
+    }
+
+    /**
+     * Set the generated poms developers.
+     * @param pomDevelopers the developers
+     */
+    public void setDevelopers(final List<Developer> pomDevelopers) {
+        this.developers = pomDevelopers;
+    }
+
+    /**
+     * Set the generated poms licenses.
+     * @param pomLicenses the licenses
+     */
+    public void setLicenses(final List<License> pomLicenses) {
+        this.licenses = pomLicenses;
+    }
+
+    /**
+     * Set the generated poms organization.
+     * @param pomOrganization the organization
+     */
+    public void setOrganization(final Organization pomOrganization) {
+        this.organization = pomOrganization;
+    }
+
+    /**
+     * Create the model of a generated pom.
+     * @param pomFile the input pom file
+     * @param groupId the generated pom groupId
+     * @param artifactId the generated pom artifactId
+     * @param version the generated pom version
+     * @param dependencies the generated pom dependencies, excluded
+     * dependencies are filtered out
+     * @return the model
+     * @throws MojoExecutionException if an error occurs while reading the
+     * input pom file
+     */
+    public Model create(final File pomFile,
+            final String groupId,
+            final String artifactId,
+            final String version,
+            final List<Dependency> dependencies)
+            throws MojoExecutionException {
+
+        return create(readModel(pomFile), groupId, artifactId, version,
+                dependencies);
+    }
+
+    /**
+     * Create the model of a generated pom from a base model.
+     * @param base the base model, modified and returned
+     * @param groupId the generated pom groupId
+     * @param artifactId the generated pom artifactId
+     * @param version the generated pom version
+     * @param dependencies the generated pom dependencies, excluded
+     * dependencies are filtered out
+     * @return the model
+     */
+    public Model create(final Model base,
+            final String groupId,
+            final String artifactId,
+            final String version,
+            final List<Dependency> dependencies) {
+
+        Model model = base;
+        model.setGroupId(groupId);
+        model.setArtifactId(artifactId);
+        model.setVersion(version);
+        model.setDevelopers(developers);
+        model.setParent(parent);
+        model.setScm(scm);
+        model.setIssueManagement(issueManagement);
+        model.setMailingLists(mailingLists);
+        model.setLicenses(licenses);
+        model.setOrganization(organization);
+        model.setBuild(new Build());
+
+        model.setDependencies(filter(dependencies));
+        return model;
+    }
+
+    /**
+     * Create a model holding the inputs of a generated pom, excluding the
+     * input pom file.
+     * The input pom file is not read and the dependencies are not filtered.
+     * @param groupId the generated pom groupId
+     * @param artifactId the generated pom artifactId
+     * @param version the generated pom version
+     * @param dependencies the generated pom dependencies
+     * @return the model
+     */
+    public Model createInputs(final String groupId,
+            final String artifactId,
+            final String version,
+            final List<Dependency> dependencies) {
+
+        Model inputs = new Model();
+        inputs.setGroupId(groupId);
+        inputs.setArtifactId(artifactId);
+        inputs.setVersion(version);
+        inputs.setDevelopers(developers);
+        inputs.setParent(parent);
+        inputs.setScm(scm);
+        inputs.setIssueManagement(issueManagement);
+        inputs.setMailingLists(mailingLists);
+        inputs.setLicenses(licenses);
+        inputs.setOrganization(organization);
+        inputs.setDependencies(dependencies);
+        inputs.addProperty("excludeDependencies", String.valueOf(exclusions));
+        inputs.addProperty("excludeDependencyScopes", String.valueOf(scopes));
+        return inputs;
+    }
+
+    /**
+     * Compute the fingerprint of the inputs of a generated pom.
+     * @param pomFile the input pom file
+     * @param inputs the other inputs, see
+     * {@link #createInputs(String, String, String, List)}, {@code null}
+     * elements are ignored
+     * @return the fingerprint in hexadecimal
+     * @throws MojoExecutionException if an error occurs while reading the
+     * input pom file
+     */
+    public static String fingerprint(final File pomFile,
+            final Model... inputs) throws MojoExecutionException {
+
+        return fingerprint(pomFile, Collections.<File>emptyList(), inputs);
+    }
+
+    /**
+     * Compute the fingerprint of the inputs of a generated pom.
+     * The content of the input pom file is hashed, the other files are
+     * hashed by path, size and last modification time.
+     * @param pomFile the input pom file
+     * @param files other input files, e.g. parent and import poms
+     * @param inputs the other inputs, see
+     * {@link #createInputs(String, String, String, List)}, {@code null}
+     * elements are ignored
+     * @return the fingerprint in hexadecimal
+     * @throws MojoExecutionException if an error occurs while reading the
+     * input pom file
+     */
+    public static String fingerprint(final File pomFile,
+            final List<File> files,
+            final Model... inputs) throws MojoExecutionException {
+
+        try {
+            MessageDigest md = ChecksumSidecars.newDigest(
+                    FINGERPRINT_ALGORITHM);
+            byte[] buf = new byte[BUFFER_SIZE];
+            InputStream in = new FileInputStream(pomFile);
+            try {
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    md.update(buf, 0, n);
+                }
+            } finally {
+                IOUtil.close(in);
+            }
+            for (File file : files) {
+                md.update((file.getAbsolutePath() + '\n' + file.length()
+                        + '\n' + file.lastModified() + '\n')
+                        .getBytes("UTF-8"));
+            }
+            for (Model model : inputs) {
+                if (model != null) {
+                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    new DefaultModelWriter().write(baos, /* options */ null,
+                            model);
+                    md.update(baos.toByteArray());
+                }
+            }
+            return ChecksumSidecars.toHex(md.digest());
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Test if a generated pom is up-to-date.
+     * @param fingerprintFile the file recording the fingerprint of the last
+     * generation
+     * @param fingerprint the fingerprint of the current inputs
+     * @param pom the generated pom file
+     * @return {@code true} if the recorded fingerprint matches and the
+     * generated pom is unchanged since it was written
+     */
+    public static boolean isUpToDate(final File fingerprintFile,
+            final String fingerprint,
+            final File pom) {
+
+        if (!fingerprintFile.isFile() || !pom.isFile()) {
+            return false;
+        }
+        Properties props = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(fingerprintFile);
+            props.load(in);
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            IOUtil.close(in);
+        }
+        return fingerprint.equals(props.getProperty("fingerprint"))
+                && pom.getAbsolutePath().equals(props.getProperty("pom"))
+                && String.valueOf(pom.length()).equals(
+                        props.getProperty("length"))
+                && String.valueOf(pom.lastModified()).equals(
+                        props.getProperty("lastModified"));
+    }
+
+    /**
+     * Record the fingerprint of the inputs of a generated pom.
+     * @param fingerprintFile the file to write
+     * @param fingerprint the fingerprint of the inputs
+     * @param pom the generated pom file
+     * @throws MojoExecutionException if an error occurs while writing
+     */
+    public static void saveFingerprint(final File fingerprintFile,
+            final String fingerprint,
+            final File pom) throws MojoExecutionException {
+
+        Properties props = new Properties();
+        props.setProperty("fingerprint", fingerprint);
+        props.setProperty("pom", pom.getAbsolutePath());
+        props.setProperty("length", String.valueOf(pom.length()));
+        props.setProperty("lastModified", String.valueOf(pom.lastModified()));
+        fingerprintFile.getParentFile().mkdirs();
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(fingerprintFile);
+            props.store(out, "generated pom inputs");
+        } catch (IOException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+}
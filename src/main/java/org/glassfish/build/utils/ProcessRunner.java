@@ -0,0 +1,455 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Runs a command in a native process.
+ * The standard output and error streams are pumped by dedicated threads,
+ * either to the log line by line or to a file as raw bytes. The streams are
+ * not read anymore once the process is gone and the remaining timeout, or a
+ * short drain period, has elapsed ; they may be held open by a background
+ * process that inherited them.
+ */
+public final class ProcessRunner {
+
+    /**
+     * Buffer size used to copy the output to a file.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Prefix of the logged output lines.
+     */
+    private static final String LOG_PREFIX = "[exec] ";
+
+    /**
+     * Minimum time in milliseconds given to the output threads to drain the
+     * process streams once the process is gone.
+     */
+    private static final long DRAIN_TIMEOUT = 2000;
+
+    /**
+     * The command line.
+     */
+    private final List<String> command;
+
+    /**
+     * The log.
+     */
+    private final Log log;
+
+    /**
+     * The working directory, {@code null} to use the current directory.
+     */
+    private File directory;
+
+    /**
+     * The environment variables to set.
+     */
+    private Map<String, String> environment = Collections.emptyMap();
+
+    /**
+     * The timeout in milliseconds, {@code 0} for no timeout.
+     */
+    private long timeout;
+
+    /**
+     * The file to write the output to, {@code null} to log the output.
+     */
+    private File output;
+
+    /**
+     * Create a new {@code ProcessRunner} instance.
+     * @param cmdLine the executable followed by its arguments
+     * @param mavenLog the log used for the output
+     */
+    public ProcessRunner(final List<String> cmdLine, final Log mavenLog) {
+        this.command = new ArrayList<String>(cmdLine);
+        this.log = mavenLog;
+    }
+
+    /**
+     * Set the working directory.
+     * @param dir the working directory
+     */
+    public void setDirectory(final File dir) {
+        this.directory = dir;
+    }
+
+    /**
+     * Set the environment variables added to the inherited environment.
+     * @param env the environment variables, may be {@code null}
+     */
+    public void setEnvironment(final Map<String, String> env) {
+        if (env == null) {
+            this.environment = Collections.emptyMap();
+        } else {
+            this.environment = env;
+        }
+    }
+
+    /**
+     * Set the timeout after which the process is destroyed.
+     * @param millis the timeout in milliseconds, {@code 0} for no timeout
+     */
+    public void setTimeout(final long millis) {
+        this.timeout = millis;
+    }
+
+    /**
+     * Set the file to write the output to instead of logging it.
+     * @param file the output file, {@code null} to log the output
+     */
+    public void setOutput(final File file) {
+        this.output = file;
+    }
+
+    /**
+     * Run the command and wait for its completion.
+     * @return the exit status
+     * @throws IOException if the process cannot be started or if an error
+     * occurs while writing the output file
+     * @throws InterruptedException if interrupted while waiting for the
+     * process, the process is destroyed
+     */
+    public Result run() throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        if (directory != null) {
+            builder.directory(directory);
+        }
+        builder.environment().putAll(environment);
+
+        OutputStream out = null;
+        if (output != null) {
+            output.getParentFile().mkdirs();
+            out = new FileOutputStream(output);
+        }
+        long start = System.currentTimeMillis();
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException ex) {
+            IOUtil.close(out);
+            throw ex;
+        }
+        Watchdog watchdog = null;
+        Pump stdout;
+        Pump stderr;
+        try {
+            process.getOutputStream().close();
+            stdout = new Pump(process.getInputStream(), out, log);
+            stderr = new Pump(process.getErrorStream(), out, log);
+            stdout.start();
+            stderr.start();
+            if (timeout > 0) {
+                watchdog = new Watchdog(process, timeout);
+                watchdog.start();
+            }
+            int exitCode = process.waitFor();
+            boolean timedOut = false;
+            if (watchdog != null) {
+                watchdog.interrupt();
+                timedOut = watchdog.hasKilled();
+            }
+            long drain = DRAIN_TIMEOUT;
+            if (timeout > 0) {
+                drain = Math.max(start + timeout - System.currentTimeMillis(),
+                        DRAIN_TIMEOUT);
+            }
+            long deadline = System.currentTimeMillis() + drain;
+            stdout.join(drain);
+            stderr.join(Math.max(deadline - System.currentTimeMillis(), 1));
+            if (stdout.isAlive() || stderr.isAlive()) {
+                stdout.interrupt();
+                stderr.interrupt();
+                log.warn(LOG_PREFIX + "output not closed " + drain
+                        + "ms after the process exited, it may be held by a"
+                        + " background process ; the rest is discarded");
+            } else if (stdout.getError() != null) {
+                throw stdout.getError();
+            } else if (stderr.getError() != null) {
+                throw stderr.getError();
+            }
+            return new Result(exitCode, timedOut,
+                    System.currentTimeMillis() - start);
+        } finally {
+            if (watchdog != null) {
+                watchdog.interrupt();
+            }
+            process.destroy();
+            IOUtil.close(process.getInputStream());
+            IOUtil.close(process.getErrorStream());
+            if (out != null) {
+                synchronized (out) {
+                    IOUtil.close(out);
+                }
+            }
+        }
+    }
+
+    /**
+     * The exit status of a process.
+     */
+    public static final class Result {
+
+        /**
+         * The exit code.
+         */
+        private final int exitCode;
+
+        /**
+         * Indicate if the process was destroyed after the timeout.
+         */
+        private final boolean timedOut;
+
+        /**
+         * The duration in milliseconds.
+         */
+        private final long duration;
+
+        /**
+         * Create a new {@code Result} instance.
+         * @param code the exit code
+         * @param killed {@code true} if the process timed out
+         * @param millis the duration in milliseconds
+         */
+        private Result(final int code,
+                final boolean killed,
+                final long millis) {
+
+            this.exitCode = code;
+            this.timedOut = killed;
+            this.duration = millis;
+        }
+
+        /**
+         * Get the exit code.
+         * @return the exit code
+         */
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        /**
+         * Indicate if the process was destroyed after the timeout.
+         * @return {@code true} if the process timed out
+         */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * Get the duration of the process.
+         * @return the duration in milliseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Indicate if the process completed successfully.
+         * @return {@code true} if the process did not time out and exited
+         * with {@code 0}
+         */
+        public boolean isSuccess() {
+            return !timedOut && exitCode == 0;
+        }
+
+        @Override
+        public String toString() {
+            if (timedOut) {
+                return String.format("timed out after %dms", duration);
+            }
+            return String.format("exit code %d in %dms", exitCode, duration);
+        }
+    }
+
+    /**
+     * Thread that copies a process stream to a file or to the log.
+     */
+    private static final class Pump extends Thread {
+
+        /**
+         * The process stream.
+         */
+        private final InputStream in;
+
+        /**
+         * The output file stream, {@code null} to log the lines.
+         */
+        private final OutputStream out;
+
+        /**
+         * The log.
+         */
+        private final Log log;
+
+        /**
+         * The error that occurred while writing the output file.
+         */
+        private volatile IOException error;
+
+        /**
+         * Create a new {@code Pump} instance.
+         * @param input the process stream
+         * @param fileOut the output file stream, {@code null} to log the lines
+         * @param mavenLog the log
+         */
+        private Pump(final InputStream input,
+                final OutputStream fileOut,
+                final Log mavenLog) {
+
+            this.in = input;
+            this.out = fileOut;
+            this.log = mavenLog;
+            setDaemon(true);
+        }
+
+        /**
+         * Get the error that occurred while writing the output file.
+         * @return the error, {@code null} if none
+         */
+        IOException getError() {
+            return error;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (out != null) {
+                    byte[] buf = new byte[BUFFER_SIZE];
+                    int n = in.read(buf);
+                    while (n != -1 && !isInterrupted()) {
+                        synchronized (out) {
+                            out.write(buf, 0, n);
+                        }
+                        n = in.read(buf);
+                    }
+                } else {
+                    BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(in));
+                    String line = reader.readLine();
+                    while (line != null && !isInterrupted()) {
+                        log.info(LOG_PREFIX + line);
+                        line = reader.readLine();
+                    }
+                }
+            } catch (IOException ex) {
+                if (out != null && !isInterrupted()) {
+                    error = ex;
+                }
+            } finally {
+                IOUtil.close(in);
+            }
+        }
+    }
+
+    /**
+     * Thread that destroys a process after a timeout.
+     */
+    private static final class Watchdog extends Thread {
+
+        /**
+         * The process.
+         */
+        private final Process process;
+
+        /**
+         * The timeout in milliseconds.
+         */
+        private final long timeout;
+
+        /**
+         * Indicate if the process was destroyed.
+         */
+        private volatile boolean killed;
+
+        /**
+         * Create a new {@code Watchdog} instance.
+         * @param proc the process to watch
+         * @param millis the timeout in milliseconds
+         */
+        private Watchdog(final Process proc, final long millis) {
+            this.process = proc;
+            this.timeout = millis;
+            setDaemon(true);
+        }
+
+        /**
+         * Indicate if the process was destroyed.
+         * @return {@code true} if the timeout expired
+         */
+        boolean hasKilled() {
+            return killed;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Thread.sleep(timeout);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            try {
+                process.exitValue();
+                // already exited
+                return;
+            } catch (IllegalThreadStateException ex) {
+                killed = true;
+            }
+            process.destroy();
+        }
+    }
+}
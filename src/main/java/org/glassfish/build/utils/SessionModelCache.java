@@ -0,0 +1,126 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.model.building.ModelCache;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * A model cache shared by all the models built during a repository session.
+ * The model builder uses it to memoize the parent and import poms it
+ * resolves, each of them is read once per session.
+ */
+final class SessionModelCache implements ModelCache {
+
+    /**
+     * The key of the cache in the session data.
+     */
+    private static final Object KEY = SessionModelCache.class;
+
+    /**
+     * The cached data, keyed by {@code groupId:artifactId:version:tag}.
+     */
+    private final ConcurrentMap<String, Object> cache =
+            new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Create a new {@code SessionModelCache} instance.
+     */
+    private SessionModelCache() {
+    }
+
+    /**
+     * Get the cache of a repository session, created if needed.
+     * @param session the repository session
+     * @return the cache
+     */
+    static SessionModelCache get(final RepositorySystemSession session) {
+        SessionData data = session.getData();
+        while (true) {
+            Object cache = data.get(KEY);
+            if (cache != null) {
+                return (SessionModelCache) cache;
+            }
+            SessionModelCache created = new SessionModelCache();
+            if (data.set(KEY, null, created)) {
+                return created;
+            }
+        }
+    }
+
+    @Override
+    public void put(final String groupId,
+            final String artifactId,
+            final String version,
+            final String tag,
+            final Object data) {
+
+        cache.put(key(groupId, artifactId, version, tag), data);
+    }
+
+    @Override
+    public Object get(final String groupId,
+            final String artifactId,
+            final String version,
+            final String tag) {
+
+        return cache.get(key(groupId, artifactId, version, tag));
+    }
+
+    /**
+     * Create a cache key.
+     * @param groupId the groupId
+     * @param artifactId the artifactId
+     * @param version the version
+     * @param tag the tag of the cached data
+     * @return the key
+     */
+    private static String key(final String groupId,
+            final String artifactId,
+            final String version,
+            final String tag) {
+
+        return groupId + ':' + artifactId + ':' + version + ':' + tag;
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Record of an archive unpacked for a given artifact.
+ * A marker holds the coordinates of the artifact, the checksum of the
+ * archive, the selector used to unpack it and the list of unpacked files ; it
+ * is used to skip unchanged artifacts and to remove the files of previous
+ * versions.
+ */
+public final class UnpackMarker {
+
+    /**
+     * Extension of the marker files.
+     */
+    private static final String MARKER_EXT = ".marker";
+
+    /**
+     * Extension of the files listing the unpacked files.
+     */
+    private static final String FILES_EXT = ".files";
+
+    /**
+     * The directory containing the markers.
+     */
+    private final File dir;
+
+    /**
+     * The groupId of the artifact.
+     */
+    private final String groupId;
+
+    /**
+     * The artifactId of the artifact.
+     */
+    private final String artifactId;
+
+    /**
+     * The version of the artifact.
+     */
+    private final String version;
+
+    /**
+     * The SHA-1 of the archive.
+     */
+    private final String sha1;
+
+    /**
+     * The size of the archive.
+     */
+    private final long size;
+
+    /**
+     * The last modification time of the archive.
+     */
+    private final long lastModified;
+
+    /**
+     * The selector used to unpack the archive.
+     */
+    private final String selector;
+
+    /**
+     * The unpacked files.
+     */
+    private List<String> files = Collections.emptyList();
+
+    /**
+     * Create a new {@code UnpackMarker} instance.
+     * @param markersDir the directory containing the markers
+     * @param props the marker properties
+     */
+    private UnpackMarker(final File markersDir, final Properties props) {
+        this.dir = markersDir;
+        this.groupId = props.getProperty("groupId", "");
+        this.artifactId = props.getProperty("artifactId", "");
+        this.version = props.getProperty("version", "");
+        this.sha1 = props.getProperty("sha1", "");
+        this.size = parseLong(props.getProperty("size"));
+        this.lastModified = parseLong(props.getProperty("lastModified"));
+        this.selector = props.getProperty("selector", "");
+    }
+
+    /**
+     * Create a marker for an archive.
+     * The checksum of the previous marker is reused if the size and the last
+     * modification time of the archive are unchanged.
+     * @param markersDir the directory containing the markers
+     * @param groupId the groupId of the artifact
+     * @param artifactId the artifactId of the artifact
+     * @param version the version of the artifact
+     * @param archive the archive
+     * @param selector the selector used to unpack the archive
+     * @param previous the previous marker for the artifact, may be
+     * {@code null}
+     * @return the created marker
+     * @throws IOException if an error occurs while reading the archive
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public static UnpackMarker create(final File markersDir,
+            final String groupId,
+            final String artifactId,
+            final String version,
+            final File archive,
+            final String selector,
+            final UnpackMarker previous) throws IOException {
+
+        Properties props = new Properties();
+        props.setProperty("groupId", groupId);
+        props.setProperty("artifactId", artifactId);
+        props.setProperty("version", version);
+        props.setProperty("size", String.valueOf(archive.length()));
+        props.setProperty("lastModified",
+                String.valueOf(archive.lastModified()));
+        props.setProperty("selector", selector);
+        if (previous != null
+                && previous.size == archive.length()
+                && previous.lastModified == archive.lastModified()) {
+            props.setProperty("sha1", previous.sha1);
+        } else {
+            props.setProperty("sha1", sha1(archive));
+        }
+        return new UnpackMarker(markersDir, props);
+    }
+
+    /**
+     * Read all the markers of a directory.
+     * @param markersDir the directory containing the markers
+     * @return the markers
+     * @throws IOException if an error occurs while reading the markers
+     */
+    public static List<UnpackMarker> readAll(final File markersDir)
+            throws IOException {
+
+        List<UnpackMarker> markers = new ArrayList<UnpackMarker>();
+        File[] markerFiles = markersDir.listFiles();
+        if (markerFiles == null) {
+            return markers;
+        }
+        for (File markerFile : markerFiles) {
+            if (!markerFile.getName().endsWith(MARKER_EXT)) {
+                continue;
+            }
+            Properties props = new Properties();
+            InputStream in = new FileInputStream(markerFile);
+            try {
+                props.load(in);
+            } finally {
+                IOUtil.close(in);
+            }
+            UnpackMarker marker = new UnpackMarker(markersDir, props);
+            marker.files = marker.readFiles();
+            markers.add(marker);
+        }
+        return markers;
+    }
+
+    /**
+     * Get the key of this marker.
+     * @return {@code groupId:artifactId}
+     */
+    public String getKey() {
+        return groupId + ':' + artifactId;
+    }
+
+    /**
+     * Get the version of the artifact.
+     * @return the version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the unpacked files.
+     * @return the names of the unpacked files
+     */
+    public List<String> getFiles() {
+        return files;
+    }
+
+    /**
+     * Set the unpacked files.
+     * @param unpacked the names of the unpacked files
+     */
+    public void setFiles(final List<String> unpacked) {
+        this.files = unpacked;
+    }
+
+    /**
+     * Test if this marker describes the same unpack as another marker.
+     * @param other the other marker
+     * @return {@code true} if the version, checksum and selector are the
+     * same
+     */
+    public boolean isSameAs(final UnpackMarker other) {
+        return other != null
+                && version.equals(other.version)
+                && sha1.equals(other.sha1)
+                && selector.equals(other.selector);
+    }
+
+    /**
+     * Write this marker.
+     * @throws IOException if an error occurs while writing
+     */
+    public void save() throws IOException {
+        dir.mkdirs();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file(FILES_EXT)), "UTF-8"));
+        try {
+            for (String file : files) {
+                writer.write(file);
+                writer.write('\n');
+            }
+        } finally {
+            IOUtil.close(writer);
+        }
+
+        Properties props = new Properties();
+        props.setProperty("groupId", groupId);
+        props.setProperty("artifactId", artifactId);
+        props.setProperty("version", version);
+        props.setProperty("sha1", sha1);
+        props.setProperty("size", String.valueOf(size));
+        props.setProperty("lastModified", String.valueOf(lastModified));
+        props.setProperty("selector", selector);
+        OutputStream out = new FileOutputStream(file(MARKER_EXT));
+        try {
+            props.store(out, getKey());
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * Delete this marker.
+     */
+    public void delete() {
+        file(MARKER_EXT).delete();
+        file(FILES_EXT).delete();
+    }
+
+    /**
+     * Get a file of this marker.
+     * @param ext the file extension
+     * @return the file
+     */
+    private File file(final String ext) {
+        return new File(dir, groupId + '_' + artifactId + ext);
+    }
+
+    /**
+     * Read the list of unpacked files.
+     * @return the names of the unpacked files
+     * @throws IOException if an error occurs while reading
+     */
+    private List<String> readFiles() throws IOException {
+        File filesFile = file(FILES_EXT);
+        List<String> names = new ArrayList<String>();
+        if (!filesFile.isFile()) {
+            return names;
+        }
+        Reader reader = new InputStreamReader(new FileInputStream(filesFile),
+                "UTF-8");
+        try {
+            BufferedReader br = new BufferedReader(reader);
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    names.add(line);
+                }
+            }
+        } finally {
+            IOUtil.close(reader);
+        }
+        return names;
+    }
+
+    /**
+     * Parse a long value.
+     * @param value the value to parse, may be {@code null}
+     * @return the parsed value, or {@code -1} if invalid
+     */
+    private static long parseLong(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Compute the SHA-1 of a file.
+     * @param file the file
+     * @return the SHA-1 in hexadecimal
+     * @throws IOException if an error occurs while reading the file
+     */
+    private static String sha1(final File file) throws IOException {
+        return ChecksumSidecars.digest(file,
+                Collections.singletonList("SHA-1"))[0];
+    }
+}
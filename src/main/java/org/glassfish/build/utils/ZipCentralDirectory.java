@@ -0,0 +1,793 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Reader for the central directory of a zip file.
+ * Only the end of central directory record and the central directory are
+ * read, the entries data is never accessed.
+ */
+public final class ZipCentralDirectory {
+
+    /**
+     * Signature of the end of central directory record.
+     */
+    private static final int EOCD_SIG = 0x06054b50;
+
+    /**
+     * Signature of the zip64 end of central directory locator.
+     */
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+    /**
+     * Signature of the zip64 end of central directory record.
+     */
+    private static final int ZIP64_EOCD_SIG = 0x06064b50;
+
+    /**
+     * Signature of a central directory file header.
+     */
+    private static final int CFH_SIG = 0x02014b50;
+
+    /**
+     * Signature of a local file header.
+     */
+    private static final int LFH_SIG = 0x04034b50;
+
+    /**
+     * Size of a local file header, without variable fields.
+     */
+    private static final int LFH_LEN = 30;
+
+    /**
+     * Offset of the name length field in a local file header.
+     */
+    private static final int LFH_NAME_LEN_OFFSET = 26;
+
+    /**
+     * Size of the buffer used to read entries data.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Size of the end of central directory record, without comment.
+     */
+    private static final int EOCD_LEN = 22;
+
+    /**
+     * Size of the zip64 end of central directory locator.
+     */
+    private static final int ZIP64_LOCATOR_LEN = 20;
+
+    /**
+     * Size of the zip64 end of central directory record, without extensible
+     * data.
+     */
+    private static final int ZIP64_EOCD_LEN = 56;
+
+    /**
+     * Size of a central directory file header, without variable fields.
+     */
+    private static final int CFH_LEN = 46;
+
+    /**
+     * Maximum size of the zip file comment.
+     */
+    private static final int MAX_COMMENT_LEN = 0xFFFF;
+
+    /**
+     * Header id of the zip64 extended information extra field.
+     */
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    /**
+     * Size of an extra field header.
+     */
+    private static final int EXTRA_HEADER_LEN = 4;
+
+    /**
+     * Marker value of 16 bits fields stored in zip64 records.
+     */
+    private static final int ZIP64_MAGIC_SHORT = 0xFFFF;
+
+    /**
+     * Marker value of 32 bits fields stored in zip64 records.
+     */
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    /**
+     * Mask to read an unsigned short.
+     */
+    private static final int SHORT_MASK = 0xFFFF;
+
+    /**
+     * Mask to read an unsigned byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Charset used to decode the names, as {@code java.util.zip} does.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Offset of the central directory.
+     */
+    private final long offset;
+
+    /**
+     * Size of the central directory.
+     */
+    private final long size;
+
+    /**
+     * The entries.
+     */
+    private final List<Entry> entries;
+
+    /**
+     * The zip file comment.
+     */
+    private final byte[] comment;
+
+    /**
+     * Create a new {@code ZipCentralDirectory} instance.
+     * @param cdOffset the offset of the central directory
+     * @param cdSize the size of the central directory
+     * @param cdEntries the entries
+     * @param zipComment the zip file comment
+     */
+    private ZipCentralDirectory(final long cdOffset,
+            final long cdSize,
+            final List<Entry> cdEntries,
+            final byte[] zipComment) {
+
+        this.offset = cdOffset;
+        this.size = cdSize;
+        this.entries = Collections.unmodifiableList(cdEntries);
+        this.comment = zipComment;
+    }
+
+    /**
+     * Get the offset of the central directory in the zip file.
+     * @return the offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get the size of the central directory.
+     * @return the size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the raw zip file comment.
+     * @return the comment bytes, empty if there is no comment
+     */
+    public byte[] getComment() {
+        return comment.clone();
+    }
+
+    /**
+     * Get the entries in central directory order.
+     * @return unmodifiable list of entries
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Get the entries indexed by name.
+     * If a name is present more than once, the first entry wins.
+     * @return map of entries by name
+     */
+    public Map<String, Entry> getEntriesByName() {
+        Map<String, Entry> map = new LinkedHashMap<String, Entry>(
+                entries.size() * 2);
+        for (Entry entry : entries) {
+            if (!map.containsKey(entry.getName())) {
+                map.put(entry.getName(), entry);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Read the central directory of a zip file.
+     * @param zipFile the zip file to read
+     * @return the created {@code ZipCentralDirectory} instance
+     * @throws IOException if an error occurs while reading the file
+     */
+    public static ZipCentralDirectory read(final File zipFile)
+            throws IOException {
+
+        RandomAccessFile raf = new RandomAccessFile(zipFile, "r");
+        try {
+            return read(raf);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read the central directory of a zip file.
+     * @param raf the zip file to read
+     * @return the created {@code ZipCentralDirectory} instance
+     * @throws IOException if an error occurs while reading the file
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static ZipCentralDirectory read(final RandomAccessFile raf)
+            throws IOException {
+
+        long length = raf.length();
+        int tailLen = (int) Math.min(length, EOCD_LEN + MAX_COMMENT_LEN);
+        ByteBuffer tail = readBuffer(raf, length - tailLen, tailLen);
+
+        int eocd = -1;
+        for (int i = tailLen - EOCD_LEN; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIG) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new ZipException("end of central directory not found");
+        }
+
+        long count = tail.getShort(eocd + 10) & SHORT_MASK;
+        long cdSize = tail.getInt(eocd + 12) & ZIP64_MAGIC;
+        long cdOffset = tail.getInt(eocd + 16) & ZIP64_MAGIC;
+        int commentLen = Math.min(tail.getShort(eocd + 20) & SHORT_MASK,
+                tailLen - eocd - EOCD_LEN);
+        byte[] comment = new byte[commentLen];
+        for (int i = 0; i < commentLen; i++) {
+            comment[i] = tail.get(eocd + EOCD_LEN + i);
+        }
+
+        long eocdPos = length - tailLen + eocd;
+        if ((count == ZIP64_MAGIC_SHORT || cdSize == ZIP64_MAGIC
+                || cdOffset == ZIP64_MAGIC)
+                && eocdPos >= ZIP64_LOCATOR_LEN) {
+            ByteBuffer locator = readBuffer(raf,
+                    eocdPos - ZIP64_LOCATOR_LEN, ZIP64_LOCATOR_LEN);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIG) {
+                long zip64Pos = locator.getLong(8);
+                if (zip64Pos < 0 || zip64Pos > length - ZIP64_EOCD_LEN) {
+                    throw new ZipException(
+                            "invalid zip64 end of central directory locator");
+                }
+                ByteBuffer zip64 = readBuffer(raf, zip64Pos, ZIP64_EOCD_LEN);
+                if (zip64.getInt(0) != ZIP64_EOCD_SIG) {
+                    throw new ZipException(
+                            "invalid zip64 end of central directory");
+                }
+                count = zip64.getLong(32);
+                cdSize = zip64.getLong(40);
+                cdOffset = zip64.getLong(48);
+            }
+        }
+
+        if (count < 0 || cdSize < 0 || cdOffset < 0
+                || cdSize > Integer.MAX_VALUE
+                || cdOffset > length - cdSize) {
+            throw new ZipException("invalid central directory");
+        }
+        ByteBuffer cd = readBuffer(raf, cdOffset, (int) cdSize);
+        List<Entry> entries = new ArrayList<Entry>((int) Math.min(count,
+                cdSize / CFH_LEN));
+        int pos = 0;
+        while (pos + CFH_LEN <= cdSize && cd.getInt(pos) == CFH_SIG) {
+            Entry entry = new Entry(cd, pos);
+            entries.add(entry);
+            pos += entry.headerLength;
+        }
+        // writers without zip64 support, e.g. Ant, truncate the count
+        if (entries.size() != count && count != ZIP64_MAGIC_SHORT
+                && (entries.size() & SHORT_MASK) != count) {
+            throw new ZipException(String.format(
+                    "central directory has %d entries, expected %d",
+                    entries.size(), count));
+        }
+        return new ZipCentralDirectory(cdOffset, cdSize, entries, comment);
+    }
+
+    /**
+     * Get the offset of the data of an entry.
+     * @param raf the zip file
+     * @param entry the entry
+     * @return the offset of the entry data
+     * @throws IOException if an error occurs while reading the local file
+     * header
+     */
+    public static long getDataOffset(final RandomAccessFile raf,
+            final Entry entry) throws IOException {
+
+        ByteBuffer header = readBuffer(raf, entry.getOffset(), LFH_LEN);
+        if (header.getInt(0) != LFH_SIG) {
+            throw new ZipException("invalid local file header for "
+                    + entry.getName());
+        }
+        int nameLen = header.getShort(LFH_NAME_LEN_OFFSET) & SHORT_MASK;
+        int extraLen = header.getShort(LFH_NAME_LEN_OFFSET + 2) & SHORT_MASK;
+        return entry.getOffset() + LFH_LEN + nameLen + extraLen;
+    }
+
+    /**
+     * Open a stream that reads the uncompressed data of an entry.
+     * The stream reads directly from the given file, it must not be used
+     * concurrently with other reads of the same {@code RandomAccessFile}.
+     * @param raf the zip file
+     * @param entry the entry
+     * @return the created {@code InputStream}
+     * @throws IOException if an error occurs while reading the local file
+     * header or if the compression method is not supported
+     */
+    public static InputStream getInputStream(final RandomAccessFile raf,
+            final Entry entry) throws IOException {
+
+        long pos = getDataOffset(raf, entry);
+        if (entry.getMethod() == ZipEntry.STORED) {
+            return new RegionInputStream(raf, pos, entry.getCompressedSize(),
+                    /* dummy */ false);
+        }
+        if (entry.getMethod() == ZipEntry.DEFLATED) {
+            return new EntryInflaterInputStream(new RegionInputStream(raf,
+                    pos, entry.getCompressedSize(), /* dummy */ true));
+        }
+        throw new ZipException("unsupported compression method "
+                + entry.getMethod() + " for " + entry.getName());
+    }
+
+    /**
+     * Read a region of a file into a little-endian buffer.
+     * @param raf the file to read
+     * @param pos the position of the region
+     * @param len the length of the region
+     * @return the buffer
+     * @throws IOException if an error occurs while reading the file
+     */
+    private static ByteBuffer readBuffer(final RandomAccessFile raf,
+            final long pos,
+            final int len) throws IOException {
+
+        byte[] buf = new byte[len];
+        raf.seek(pos);
+        raf.readFully(buf);
+        return ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * {@code InputStream} that reads a region of a {@code RandomAccessFile}.
+     */
+    private static final class RegionInputStream extends InputStream {
+
+        /**
+         * The file to read.
+         */
+        private final RandomAccessFile raf;
+
+        /**
+         * The current position.
+         */
+        private long pos;
+
+        /**
+         * The number of bytes left to read.
+         */
+        private long remaining;
+
+        /**
+         * Indicate if a dummy byte is returned at the end of the region.
+         */
+        private boolean dummy;
+
+        /**
+         * Create a new {@code RegionInputStream} instance.
+         * @param file the file to read
+         * @param start the position of the region
+         * @param len the length of the region
+         * @param addDummy {@code true} to return an extra zero byte at the end
+         * of the region, as needed by a {@code nowrap} inflater
+         */
+        private RegionInputStream(final RandomAccessFile file,
+                final long start,
+                final long len,
+                final boolean addDummy) {
+
+            this.raf = file;
+            this.pos = start;
+            this.remaining = len;
+            this.dummy = addDummy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            if (read(b, 0, 1) == -1) {
+                return -1;
+            }
+            return b[0] & BYTE_MASK;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+                throws IOException {
+
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                if (dummy) {
+                    dummy = false;
+                    b[off] = 0;
+                    return 1;
+                }
+                return -1;
+            }
+            raf.seek(pos);
+            int n = raf.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new ZipException("unexpected end of zip file");
+            }
+            pos += n;
+            remaining -= n;
+            return n;
+        }
+    }
+
+    /**
+     * {@code InflaterInputStream} that releases its inflater when closed.
+     */
+    private static final class EntryInflaterInputStream
+            extends InflaterInputStream {
+
+        /**
+         * Create a new {@code EntryInflaterInputStream} instance.
+         * @param in the compressed data
+         */
+        private EntryInflaterInputStream(final InputStream in) {
+            super(in, new Inflater(/* nowrap */ true), BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            inf.end();
+        }
+    }
+
+    /**
+     * A central directory entry.
+     */
+    public static final class Entry {
+
+        /**
+         * Entry name.
+         */
+        private final String name;
+
+        /**
+         * General purpose bit flag.
+         */
+        private final int flags;
+
+        /**
+         * Compression method.
+         */
+        private final int method;
+
+        /**
+         * Last modification time, in MS-DOS format.
+         */
+        private final long dosTime;
+
+        /**
+         * CRC-32 of the uncompressed data.
+         */
+        private final long crc;
+
+        /**
+         * Compressed size.
+         */
+        private final long compressedSize;
+
+        /**
+         * Uncompressed size.
+         */
+        private final long size;
+
+        /**
+         * Offset of the local file header.
+         */
+        private final long offset;
+
+        /**
+         * Version made by.
+         */
+        private final int versionMadeBy;
+
+        /**
+         * External file attributes.
+         */
+        private final long externalAttributes;
+
+        /**
+         * Length of the central directory header for this entry.
+         */
+        private final int headerLength;
+
+        /**
+         * Parse an entry from the central directory.
+         * @param cd the central directory buffer
+         * @param pos the position of the entry header
+         * @throws ZipException if the entry header is malformed
+         */
+        @SuppressWarnings("checkstyle:MagicNumber")
+        private Entry(final ByteBuffer cd, final int pos) throws ZipException {
+            versionMadeBy = cd.getShort(pos + 4) & SHORT_MASK;
+            flags = cd.getShort(pos + 8) & SHORT_MASK;
+            method = cd.getShort(pos + 10) & SHORT_MASK;
+            dosTime = cd.getInt(pos + 12) & ZIP64_MAGIC;
+            crc = cd.getInt(pos + 16) & ZIP64_MAGIC;
+            long csize = cd.getInt(pos + 20) & ZIP64_MAGIC;
+            long usize = cd.getInt(pos + 24) & ZIP64_MAGIC;
+            int nameLen = cd.getShort(pos + 28) & SHORT_MASK;
+            int extraLen = cd.getShort(pos + 30) & SHORT_MASK;
+            int commentLen = cd.getShort(pos + 32) & SHORT_MASK;
+            externalAttributes = cd.getInt(pos + 38) & ZIP64_MAGIC;
+            long lhOffset = cd.getInt(pos + 42) & ZIP64_MAGIC;
+            headerLength = CFH_LEN + nameLen + extraLen + commentLen;
+            if (pos + headerLength > cd.limit()) {
+                throw new ZipException("truncated central directory header");
+            }
+
+            byte[] nameBytes = new byte[nameLen];
+            for (int i = 0; i < nameLen; i++) {
+                nameBytes[i] = cd.get(pos + CFH_LEN + i);
+            }
+            name = new String(nameBytes, UTF8);
+
+            // zip64 extended information
+            int extra = pos + CFH_LEN + nameLen;
+            int extraEnd = extra + extraLen;
+            while (extra + EXTRA_HEADER_LEN <= extraEnd) {
+                int id = cd.getShort(extra) & SHORT_MASK;
+                int len = cd.getShort(extra + 2) & SHORT_MASK;
+                int data = extra + EXTRA_HEADER_LEN;
+                if (data + len > extraEnd) {
+                    throw new ZipException("invalid extra field for "
+                            + name);
+                }
+                if (id == ZIP64_EXTRA_ID) {
+                    int dataEnd = data + len;
+                    if (usize == ZIP64_MAGIC) {
+                        usize = readZip64Field(cd, data, dataEnd, name);
+                        data += Long.SIZE / Byte.SIZE;
+                    }
+                    if (csize == ZIP64_MAGIC) {
+                        csize = readZip64Field(cd, data, dataEnd, name);
+                        data += Long.SIZE / Byte.SIZE;
+                    }
+                    if (lhOffset == ZIP64_MAGIC) {
+                        lhOffset = readZip64Field(cd, data, dataEnd, name);
+                    }
+                    break;
+                }
+                extra = data + len;
+            }
+            if (usize < 0 || csize < 0 || lhOffset < 0) {
+                throw new ZipException("invalid sizes for " + name);
+            }
+            size = usize;
+            compressedSize = csize;
+            offset = lhOffset;
+        }
+
+        /**
+         * Read a field of the zip64 extended information extra field.
+         * @param cd the central directory buffer
+         * @param pos the position of the field
+         * @param end the end of the extra field data
+         * @param name the entry name
+         * @return the field value
+         * @throws ZipException if the field is beyond the extra field data
+         */
+        private static long readZip64Field(final ByteBuffer cd,
+                final int pos,
+                final int end,
+                final String name) throws ZipException {
+
+            if (pos + Long.SIZE / Byte.SIZE > end) {
+                throw new ZipException("invalid zip64 extra field for "
+                        + name);
+            }
+            return cd.getLong(pos);
+        }
+
+        /**
+         * Get the entry name.
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Indicate if this entry is a directory.
+         * @return {@code true} if the entry is a directory, {@code false}
+         * otherwise
+         */
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * Get the general purpose bit flag.
+         * @return the flags
+         */
+        public int getFlags() {
+            return flags;
+        }
+
+        /**
+         * Get the compression method.
+         * @return the compression method
+         */
+        public int getMethod() {
+            return method;
+        }
+
+        /**
+         * Get the last modification time in MS-DOS format.
+         * @return the MS-DOS time
+         */
+        public long getDosTime() {
+            return dosTime;
+        }
+
+        /**
+         * Get the last modification time.
+         * @return the time in milliseconds
+         */
+        @SuppressWarnings("checkstyle:MagicNumber")
+        public long getTime() {
+            Calendar c = Calendar.getInstance();
+            c.clear();
+            c.set((int) ((dosTime >> 25) & 0x7f) + 1980,
+                    (int) ((dosTime >> 21) & 0x0f) - 1,
+                    (int) (dosTime >> 16) & 0x1f,
+                    (int) (dosTime >> 11) & 0x1f,
+                    (int) (dosTime >> 5) & 0x3f,
+                    (int) (dosTime << 1) & 0x3e);
+            return c.getTimeInMillis();
+        }
+
+        /**
+         * Get the CRC-32 of the uncompressed data.
+         * @return the CRC-32
+         */
+        public long getCrc() {
+            return crc;
+        }
+
+        /**
+         * Get the compressed size.
+         * @return the compressed size
+         */
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        /**
+         * Get the uncompressed size.
+         * @return the uncompressed size
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Get the offset of the local file header.
+         * @return the offset
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Get the version made by.
+         * @return the version made by
+         */
+        public int getVersionMadeBy() {
+            return versionMadeBy;
+        }
+
+        /**
+         * Get the external file attributes.
+         * @return the external file attributes
+         */
+        public long getExternalAttributes() {
+            return externalAttributes;
+        }
+
+        /**
+         * Get the Unix mode of this entry.
+         * @return the Unix mode, or {@code 0} if the entry was not created on
+         * Unix
+         */
+        @SuppressWarnings("checkstyle:MagicNumber")
+        public int getUnixMode() {
+            if ((versionMadeBy >> 8) != 3) {
+                return 0;
+            }
+            return (int) (externalAttributes >> 16) & SHORT_MASK;
+        }
+
+        /**
+         * Get the length of the central directory header of this entry.
+         * @return the length in bytes
+         */
+        public int getHeaderLength() {
+            return headerLength;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Low level writer of zip entries at a given position of a file.
+ * The central directory is kept in memory and written by {@link #finish}.
+ * Entries are written without zip64 extensions, like the Ant zip task.
+ */
+final class ZipEntryWriter {
+
+    /**
+     * Signature of a local file header.
+     */
+    private static final int LFH_SIG = 0x04034b50;
+
+    /**
+     * Signature of a central directory file header.
+     */
+    private static final int CFH_SIG = 0x02014b50;
+
+    /**
+     * Signature of the end of central directory record.
+     */
+    private static final int EOCD_SIG = 0x06054b50;
+
+    /**
+     * Size of a local file header, without variable fields.
+     */
+    private static final int LFH_LEN = 30;
+
+    /**
+     * Offset of the CRC-32 field in a local file header.
+     */
+    private static final int LFH_CRC_OFFSET = 14;
+
+    /**
+     * Size of the CRC-32, compressed size and uncompressed size fields.
+     */
+    private static final int LFH_SIZES_LEN = 12;
+
+    /**
+     * Size of a central directory file header, without variable fields.
+     */
+    private static final int CFH_LEN = 46;
+
+    /**
+     * Size of the end of central directory record, without comment.
+     */
+    private static final int EOCD_LEN = 22;
+
+    /**
+     * Version made by: Unix, zip specification 2.0.
+     */
+    private static final int VERSION_MADE_BY = 0x0314;
+
+    /**
+     * Version needed to extract deflated entries.
+     */
+    private static final int VERSION_DEFLATED = 20;
+
+    /**
+     * Version needed to extract stored entries.
+     */
+    private static final int VERSION_STORED = 10;
+
+    /**
+     * General purpose flag indicating UTF-8 names.
+     */
+    private static final int UTF8_FLAG = 0x800;
+
+    /**
+     * General purpose flag indicating encrypted entries.
+     */
+    private static final int ENCRYPTED_FLAG = 0x1;
+
+    /**
+     * Largest value of a 32 bits field.
+     */
+    private static final long MAX_INT = 0xFFFFFFFFL;
+
+    /**
+     * Largest value of a 16 bits field.
+     */
+    private static final int MAX_SHORT = 0xFFFF;
+
+    /**
+     * Size of the I/O buffers.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Charset used for entry names.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The file to write to.
+     */
+    private final RandomAccessFile raf;
+
+    /**
+     * The central directory records.
+     */
+    private final ByteArrayOutputStream cd = new ByteArrayOutputStream();
+
+    /**
+     * The compressor.
+     */
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION,
+            /* nowrap */ true);
+
+    /**
+     * The checksum of the current entry.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Input buffer.
+     */
+    private final byte[] inBuf = new byte[BUFFER_SIZE];
+
+    /**
+     * Output buffer.
+     */
+    private final byte[] outBuf = new byte[BUFFER_SIZE];
+
+    /**
+     * Number of entries in the central directory.
+     */
+    private int count;
+
+    /**
+     * Position of the next entry.
+     */
+    private long position;
+
+    /**
+     * Create a new {@code ZipEntryWriter} instance.
+     * @param file the file to write to
+     * @param pos the position at which the first entry is written
+     * @throws IOException if an error occurs while seeking
+     */
+    ZipEntryWriter(final RandomAccessFile file, final long pos)
+            throws IOException {
+
+        this.raf = file;
+        this.position = pos;
+        raf.seek(pos);
+    }
+
+    /**
+     * Add existing central directory records, they will be written before
+     * the records of the entries written by this instance.
+     * @param records the raw central directory records
+     * @param entries the number of records
+     */
+    void addCentralDirectory(final byte[] records, final int entries) {
+        cd.write(records, 0, records.length);
+        count += entries;
+    }
+
+    /**
+     * Get the number of entries in the central directory.
+     * @return the number of entries
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Write a directory entry.
+     * @param name the entry name, ending with a slash
+     * @param time the last modification time
+     * @param unixMode the Unix mode, including the file type bits
+     * @throws IOException if an error occurs while writing
+     */
+    void writeDirectory(final String name,
+            final long time,
+            final int unixMode) throws IOException {
+
+        byte[] nameBytes = name.getBytes(UTF8);
+        long offset = position;
+        long dosTime = toDosTime(time);
+        writeLocalHeader(nameBytes, ZipEntry.STORED, dosTime, 0, 0, 0);
+        writeCentralHeader(nameBytes, ZipEntry.STORED, dosTime, 0, 0, 0,
+                externalAttributes(name, unixMode), offset);
+    }
+
+    /**
+     * Write a deflated file entry.
+     * @param name the entry name
+     * @param in the entry content
+     * @param time the last modification time
+     * @param unixMode the Unix mode, including the file type bits
+     * @return the number of bytes read
+     * @throws IOException if an error occurs while reading or writing
+     */
+    long writeFile(final String name,
+            final InputStream in,
+            final long time,
+            final int unixMode) throws IOException {
+
+        byte[] nameBytes = name.getBytes(UTF8);
+        long offset = position;
+        long dosTime = toDosTime(time);
+        writeLocalHeader(nameBytes, ZipEntry.DEFLATED, dosTime, 0, 0, 0);
+
+        crc.reset();
+        deflater.reset();
+        long csize = 0;
+        int n;
+        while ((n = in.read(inBuf)) != -1) {
+            crc.update(inBuf, 0, n);
+            deflater.setInput(inBuf, 0, n);
+            while (!deflater.needsInput()) {
+                csize += deflate();
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            csize += deflate();
+        }
+        long size = deflater.getBytesRead();
+        if (size > MAX_INT || csize > MAX_INT) {
+            throw new ZipException(name + " is too large, zip64 is not"
+                    + " supported");
+        }
+
+        // patch the local header
+        ByteBuffer sizes = newBuffer(LFH_SIZES_LEN);
+        sizes.putInt((int) crc.getValue());
+        sizes.putInt((int) csize);
+        sizes.putInt((int) size);
+        raf.seek(offset + LFH_CRC_OFFSET);
+        raf.write(sizes.array());
+        raf.seek(position);
+
+        writeCentralHeader(nameBytes, ZipEntry.DEFLATED, dosTime,
+                crc.getValue(), csize, size,
+                externalAttributes(name, unixMode), offset);
+        return size;
+    }
+
+    /**
+     * Copy an entry of another zip file, the entry data is copied without
+     * being uncompressed.
+     * @param src the zip file containing the entry
+     * @param entry the entry to copy
+     * @throws IOException if an error occurs while reading or writing
+     */
+    void copyEntry(final RandomAccessFile src,
+            final ZipCentralDirectory.Entry entry) throws IOException {
+
+        if ((entry.getFlags() & ENCRYPTED_FLAG) != 0) {
+            throw new ZipException(entry.getName() + " is encrypted");
+        }
+        if (entry.getMethod() != ZipEntry.STORED
+                && entry.getMethod() != ZipEntry.DEFLATED) {
+            throw new ZipException("unsupported compression method "
+                    + entry.getMethod() + " for " + entry.getName());
+        }
+        if (entry.getSize() > MAX_INT || entry.getCompressedSize() > MAX_INT) {
+            throw new ZipException(entry.getName() + " is too large, zip64"
+                    + " is not supported");
+        }
+        byte[] nameBytes = entry.getName().getBytes(UTF8);
+        long offset = position;
+        writeLocalHeader(nameBytes, entry.getMethod(), entry.getDosTime(),
+                entry.getCrc(), entry.getCompressedSize(), entry.getSize());
+
+        src.seek(ZipCentralDirectory.getDataOffset(src, entry));
+        long remaining = entry.getCompressedSize();
+        while (remaining > 0) {
+            int len = src.read(outBuf, 0,
+                    (int) Math.min(outBuf.length, remaining));
+            if (len < 0) {
+                throw new ZipException("truncated data for "
+                        + entry.getName());
+            }
+            raf.write(outBuf, 0, len);
+            remaining -= len;
+        }
+        position += entry.getCompressedSize();
+
+        writeCentralHeader(nameBytes, entry.getMethod(), entry.getDosTime(),
+                entry.getCrc(), entry.getCompressedSize(), entry.getSize(),
+                entry.getVersionMadeBy(), entry.getExternalAttributes(),
+                offset);
+    }
+
+    /**
+     * Write the central directory and the end of central directory record.
+     * @param comment the zip file comment
+     * @return the position of the end of the file
+     * @throws IOException if an error occurs while writing
+     */
+    long finish(final byte[] comment) throws IOException {
+        long cdOffset = position;
+        int cdSize = cd.size();
+        if (cdOffset > MAX_INT || count > MAX_SHORT) {
+            throw new ZipException("zip file is too large, zip64 is not"
+                    + " supported");
+        }
+        raf.write(cd.toByteArray());
+        ByteBuffer eocd = newBuffer(EOCD_LEN + comment.length);
+        eocd.putInt(EOCD_SIG);
+        eocd.putShort((short) 0);
+        eocd.putShort((short) 0);
+        eocd.putShort((short) count);
+        eocd.putShort((short) count);
+        eocd.putInt(cdSize);
+        eocd.putInt((int) cdOffset);
+        eocd.putShort((short) comment.length);
+        eocd.put(comment);
+        raf.write(eocd.array());
+        position = cdOffset + cdSize + eocd.capacity();
+        deflater.end();
+        return position;
+    }
+
+    /**
+     * Compress the pending input into the file.
+     * @return the number of compressed bytes written
+     * @throws IOException if an error occurs while writing
+     */
+    private int deflate() throws IOException {
+        int len = deflater.deflate(outBuf, 0, outBuf.length);
+        if (len > 0) {
+            raf.write(outBuf, 0, len);
+            position += len;
+        }
+        return len;
+    }
+
+    /**
+     * Write a local file header.
+     * @param name the entry name
+     * @param method the compression method
+     * @param dosTime the last modification time in MS-DOS format
+     * @param crc32 the CRC-32
+     * @param csize the compressed size
+     * @param size the uncompressed size
+     * @throws IOException if an error occurs while writing
+     */
+    private void writeLocalHeader(final byte[] name,
+            final int method,
+            final long dosTime,
+            final long crc32,
+            final long csize,
+            final long size) throws IOException {
+
+        ByteBuffer header = newBuffer(LFH_LEN + name.length);
+        header.putInt(LFH_SIG);
+        header.putShort((short) versionNeeded(method));
+        header.putShort((short) UTF8_FLAG);
+        header.putShort((short) method);
+        header.putInt((int) dosTime);
+        header.putInt((int) crc32);
+        header.putInt((int) csize);
+        header.putInt((int) size);
+        header.putShort((short) name.length);
+        header.putShort((short) 0);
+        header.put(name);
+        raf.write(header.array());
+        position += header.capacity();
+    }
+
+    /**
+     * Add a central directory file header.
+     * @param name the entry name
+     * @param method the compression method
+     * @param dosTime the last modification time in MS-DOS format
+     * @param crc32 the CRC-32
+     * @param csize the compressed size
+     * @param size the uncompressed size
+     * @param attributes the external attributes
+     * @param offset the offset of the local file header
+     * @throws ZipException if the offset requires zip64
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private void writeCentralHeader(final byte[] name,
+            final int method,
+            final long dosTime,
+            final long crc32,
+            final long csize,
+            final long size,
+            final long attributes,
+            final long offset) throws ZipException {
+
+        writeCentralHeader(name, method, dosTime, crc32, csize, size,
+                VERSION_MADE_BY, attributes, offset);
+    }
+
+    /**
+     * Add a central directory file header.
+     * @param name the entry name
+     * @param method the compression method
+     * @param dosTime the last modification time in MS-DOS format
+     * @param crc32 the CRC-32
+     * @param csize the compressed size
+     * @param size the uncompressed size
+     * @param versionMadeBy the version made by
+     * @param attributes the external attributes
+     * @param offset the offset of the local file header
+     * @throws ZipException if the offset requires zip64
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private void writeCentralHeader(final byte[] name,
+            final int method,
+            final long dosTime,
+            final long crc32,
+            final long csize,
+            final long size,
+            final int versionMadeBy,
+            final long attributes,
+            final long offset) throws ZipException {
+
+        if (offset > MAX_INT) {
+            throw new ZipException("zip file is too large, zip64 is not"
+                    + " supported");
+        }
+        ByteBuffer header = newBuffer(CFH_LEN + name.length);
+        header.putInt(CFH_SIG);
+        header.putShort((short) versionMadeBy);
+        header.putShort((short) versionNeeded(method));
+        header.putShort((short) UTF8_FLAG);
+        header.putShort((short) method);
+        header.putInt((int) dosTime);
+        header.putInt((int) crc32);
+        header.putInt((int) csize);
+        header.putInt((int) size);
+        header.putShort((short) name.length);
+        // extra field length, comment length, disk number, internal attrs
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putShort((short) 0);
+        header.putInt((int) attributes);
+        header.putInt((int) offset);
+        header.put(name);
+        cd.write(header.array(), 0, header.capacity());
+        count++;
+    }
+
+    /**
+     * Get the version needed to extract an entry.
+     * @param method the compression method
+     * @return the version
+     */
+    private static int versionNeeded(final int method) {
+        if (method == ZipEntry.DEFLATED) {
+            return VERSION_DEFLATED;
+        }
+        return VERSION_STORED;
+    }
+
+    /**
+     * Compute the external attributes of an entry the same way as the Ant
+     * zip task.
+     * @param name the entry name
+     * @param unixMode the Unix mode
+     * @return the external attributes
+     */
+    private static long externalAttributes(final String name,
+            final int unixMode) {
+
+        org.apache.tools.zip.ZipEntry entry =
+                new org.apache.tools.zip.ZipEntry(name);
+        entry.setUnixMode(unixMode);
+        return entry.getExternalAttributes();
+    }
+
+    /**
+     * Create a little-endian buffer.
+     * @param capacity the buffer capacity
+     * @return the created buffer
+     */
+    private static ByteBuffer newBuffer(final int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Convert a time to the MS-DOS format.
+     * @param time the time in milliseconds
+     * @return the MS-DOS time
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    static long toDosTime(final long time) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(time);
+        int year = c.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (year - 1980) << 25)
+                | ((long) (c.get(Calendar.MONTH) + 1) << 21)
+                | ((long) c.get(Calendar.DAY_OF_MONTH) << 16)
+                | ((long) c.get(Calendar.HOUR_OF_DAY) << 11)
+                | ((long) c.get(Calendar.MINUTE) << 5)
+                | ((long) c.get(Calendar.SECOND) >> 1);
+    }
+}
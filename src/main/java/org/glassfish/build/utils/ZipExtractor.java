@@ -0,0 +1,483 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.build.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Extract selected entries of a zip file.
+ * The entries are located with the central directory, only the data of the
+ * selected entries is read. Unless disabled, the data is read through a
+ * memory mapping of the zip file, entries too large to be mapped are read
+ * with a stream.
+ */
+final class ZipExtractor {
+
+    /**
+     * Size of the copy buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Unix permission bits for execute by anyone.
+     */
+    private static final int EXEC_ALL = 0111;
+
+    /**
+     * Unix permission bits for execute by group and others.
+     */
+    private static final int EXEC_OTHERS = 0011;
+
+    /**
+     * Unix file type bits.
+     */
+    private static final int S_IFMT = 0170000;
+
+    /**
+     * Unix file type of a symbolic link.
+     */
+    private static final int S_IFLNK = 0120000;
+
+    /**
+     * The zip file.
+     */
+    private final File archive;
+
+    /**
+     * The destination directory.
+     */
+    private final File destDir;
+
+    /**
+     * The number of files left untouched because identical to the entry.
+     */
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    /**
+     * Indicate if existing files identical to the entries are left
+     * untouched.
+     */
+    private boolean skipIdentical;
+
+    /**
+     * Indicate if the zip file is read through a memory mapping.
+     */
+    private boolean mapped = true;
+
+    /**
+     * Create a new {@code ZipExtractor} instance.
+     * @param zipFile the zip file
+     * @param dir the destination directory
+     */
+    ZipExtractor(final File zipFile, final File dir) {
+        this.archive = zipFile;
+        this.destDir = dir;
+    }
+
+    /**
+     * Set the overwrite policy for existing files.
+     * @param skip {@code true} to leave untouched the existing files that have
+     * the size and CRC-32 of the entry, {@code false} to always overwrite
+     */
+    void setSkipIdentical(final boolean skip) {
+        this.skipIdentical = skip;
+    }
+
+    /**
+     * Set how the zip file is read.
+     * @param map {@code true} to read the zip file through a memory mapping,
+     * {@code false} to read it with streams
+     */
+    void setMapped(final boolean map) {
+        this.mapped = map;
+    }
+
+    /**
+     * Get the number of files left untouched because identical to the entry.
+     * @return the number of skipped files
+     */
+    int getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Test if the given entries can be extracted by this extractor.
+     * @param entries the entries
+     * @return {@code true} if all the entries are stored or deflated and
+     * none of them is a symbolic link
+     */
+    static boolean isSupported(final List<ZipCentralDirectory.Entry> entries) {
+        for (ZipCentralDirectory.Entry entry : entries) {
+            if ((entry.getUnixMode() & S_IFMT) == S_IFLNK) {
+                return false;
+            }
+            if (!entry.isDirectory()
+                    && entry.getMethod() != ZipEntry.STORED
+                    && entry.getMethod() != ZipEntry.DEFLATED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extract the given entries.
+     * @param entries the entries to extract
+     * @return the number of written files
+     * @throws IOException if an error occurs while reading or writing
+     */
+    int extract(final List<ZipCentralDirectory.Entry> entries)
+            throws IOException {
+
+        return extract(entries, 1);
+    }
+
+    /**
+     * Extract the given entries with multiple threads.
+     * The directories are created up front and only the last entry of a
+     * duplicated name is kept. The files are then split in contiguous ranges
+     * of similar compressed size, each range is extracted by a worker using
+     * its own file handle.
+     * @param entries the entries to extract
+     * @param threads the number of threads, {@code 0} to use the number of
+     * available processors
+     * @return the number of written files
+     * @throws IOException if an error occurs while reading or writing
+     */
+    int extract(final List<ZipCentralDirectory.Entry> entries,
+            final int threads) throws IOException {
+
+        // the last entry of a duplicated name wins, as when extracting
+        // sequentially, and no two workers write the same file
+        Map<File, ZipCentralDirectory.Entry> fileEntries =
+                new LinkedHashMap<File, ZipCentralDirectory.Entry>();
+        Set<File> dirs = new HashSet<File>();
+        for (ZipCentralDirectory.Entry entry : entries) {
+            File file = resolve(entry);
+            if (entry.isDirectory()) {
+                mkdirs(file, dirs);
+            } else {
+                mkdirs(file.getParentFile(), dirs);
+                fileEntries.remove(file);
+                fileEntries.put(file, entry);
+            }
+        }
+        List<ZipCentralDirectory.Entry> files =
+                new ArrayList<ZipCentralDirectory.Entry>(fileEntries.size());
+        List<File> targets = new ArrayList<File>(fileEntries.size());
+        long totalSize = 0;
+        for (Map.Entry<File, ZipCentralDirectory.Entry> fileEntry
+                : fileEntries.entrySet()) {
+            files.add(fileEntry.getValue());
+            targets.add(fileEntry.getKey());
+            totalSize += fileEntry.getValue().getCompressedSize();
+        }
+
+        int nThreads = threads;
+        if (nThreads <= 0) {
+            nThreads = Runtime.getRuntime().availableProcessors();
+        }
+        nThreads = Math.min(nThreads, files.size());
+        if (nThreads <= 1) {
+            return extract(files, targets);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            long rangeSize = totalSize / nThreads + 1;
+            int start = 0;
+            long size = 0;
+            for (int i = 0; i < files.size(); i++) {
+                size += files.get(i).getCompressedSize();
+                if (size >= rangeSize || i == files.size() - 1) {
+                    final List<ZipCentralDirectory.Entry> rangeFiles =
+                            files.subList(start, i + 1);
+                    final List<File> rangeTargets =
+                            targets.subList(start, i + 1);
+                    futures.add(executor.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws IOException {
+                            return extract(rangeFiles, rangeTargets);
+                        }
+                    }));
+                    start = i + 1;
+                    size = 0;
+                }
+            }
+            int count = 0;
+            for (Future<Integer> future : futures) {
+                count += future.get();
+            }
+            return count;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex.getMessage(), ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause().getMessage(), ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Extract file entries to the given files, using a dedicated file
+     * handle.
+     * @param files the file entries
+     * @param targets the destination files
+     * @return the number of written files
+     * @throws IOException if an error occurs while reading or writing
+     */
+    private int extract(final List<ZipCentralDirectory.Entry> files,
+            final List<File> targets) throws IOException {
+
+        byte[] buf = new byte[BUFFER_SIZE];
+        int written = 0;
+        RandomAccessFile raf = new RandomAccessFile(archive, "r");
+        MappedZipReader reader = null;
+        if (mapped) {
+            reader = new MappedZipReader(raf.getChannel());
+        }
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                ZipCentralDirectory.Entry entry = files.get(i);
+                File file = targets.get(i);
+                if (skipIdentical && isIdentical(file, entry, buf)) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                if (reader == null || !writeMapped(reader, entry, file)) {
+                    InputStream in = ZipCentralDirectory.getInputStream(raf,
+                            entry);
+                    try {
+                        write(in, file, buf);
+                    } finally {
+                        IOUtil.close(in);
+                    }
+                }
+                setAttributes(file, entry);
+                written++;
+            }
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            raf.close();
+        }
+        return written;
+    }
+
+    /**
+     * Write an entry to a file from the memory mapped zip file.
+     * The entry is mapped before the file is opened.
+     * @param reader the mapped zip file reader
+     * @param entry the entry
+     * @param file the destination file
+     * @return {@code false} if the entry cannot be mapped, in which case the
+     * file is left untouched
+     * @throws IOException if an error occurs while reading or writing
+     */
+    private static boolean writeMapped(final MappedZipReader reader,
+            final ZipCentralDirectory.Entry entry,
+            final File file) throws IOException {
+
+        ByteBuffer data = reader.map(entry);
+        if (data == null) {
+            return false;
+        }
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            reader.write(entry, data, out);
+        } finally {
+            IOUtil.close(out);
+        }
+        return true;
+    }
+
+    /**
+     * Test if an existing file has the size and CRC-32 of an entry.
+     * @param file the file
+     * @param entry the entry
+     * @param buf the read buffer
+     * @return {@code true} if the file is identical to the entry
+     * @throws IOException if an error occurs while reading the file
+     */
+    private static boolean isIdentical(final File file,
+            final ZipCentralDirectory.Entry entry,
+            final byte[] buf) throws IOException {
+
+        if (!file.isFile() || file.length() != entry.getSize()) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(file);
+        try {
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                crc.update(buf, 0, n);
+            }
+        } finally {
+            IOUtil.close(in);
+        }
+        return crc.getValue() == entry.getCrc();
+    }
+
+    /**
+     * Create a directory and its parents, unless already created.
+     * @param dir the directory to create
+     * @param created the directories already created
+     * @throws IOException if the directory cannot be created
+     */
+    private static void mkdirs(final File dir, final Set<File> created)
+            throws IOException {
+
+        if (created.add(dir) && !dir.isDirectory() && !dir.mkdirs()
+                && !dir.isDirectory()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+    }
+
+    /**
+     * Resolve the destination file of an entry.
+     * The name is normalized lexically, {@code .} segments are ignored and
+     * {@code ..} segments must not go above the destination directory. The
+     * file system is not consulted, symbolic links under the destination
+     * directory are followed as by the plexus {@code UnArchiver}.
+     * @param entry the entry
+     * @return the destination file, the destination directory itself for a
+     * directory entry such as {@code ./}
+     * @throws ZipException if the entry is outside the destination directory
+     */
+    File resolve(final ZipCentralDirectory.Entry entry) throws ZipException {
+        String name = entry.getName().replace(File.separatorChar, '/');
+        List<String> segments = new ArrayList<String>();
+        for (String segment : name.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment)) {
+                if (segments.isEmpty()) {
+                    throw new ZipException("Entry " + entry.getName()
+                            + " is outside of " + destDir);
+                }
+                segments.remove(segments.size() - 1);
+            } else {
+                segments.add(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            if (!entry.isDirectory()) {
+                throw new ZipException("Invalid entry name: "
+                        + entry.getName());
+            }
+            return destDir;
+        }
+        File file = destDir;
+        for (String segment : segments) {
+            file = new File(file, segment);
+        }
+        return file;
+    }
+
+    /**
+     * Write an entry to a file.
+     * @param in the entry data
+     * @param file the destination file
+     * @param buf the copy buffer
+     * @throws IOException if an error occurs while reading or writing
+     */
+    private static void write(final InputStream in,
+            final File file,
+            final byte[] buf) throws IOException {
+
+        OutputStream out = new FileOutputStream(file);
+        try {
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                out.write(buf, 0, n);
+            }
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * Set the modification time and the execute permission of an extracted
+     * file.
+     * @param file the extracted file
+     * @param entry the entry
+     */
+    private static void setAttributes(final File file,
+            final ZipCentralDirectory.Entry entry) {
+
+        file.setLastModified(entry.getTime());
+        int mode = entry.getUnixMode();
+        if ((mode & EXEC_ALL) != 0) {
+            file.setExecutable(true, (mode & EXEC_OTHERS) == 0);
+        }
+    }
+}
@@ -40,24 +40,60 @@
 package org.glassfish.build.utils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
 
 import org.apache.maven.plugin.logging.Log;
 import org.apache.tools.ant.BuildEvent;
 import org.apache.tools.ant.BuildListener;
+import org.apache.tools.ant.DirectoryScanner;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.taskdefs.Zip;
 import org.apache.tools.ant.taskdefs.Zip.Duplicate;
+import org.apache.tools.ant.types.Resource;
+import org.apache.tools.ant.types.ResourceCollection;
 import org.apache.tools.ant.types.ZipFileSet;
+import org.apache.tools.zip.ZipOutputStream;
+import org.codehaus.plexus.components.io.fileselectors.IncludeExcludeFileSelector;
 
 /**
- * Helper to create zip files using ant.
+ * Helper to create zip files using ant, to append to existing zip files or to
+ * merge zip files.
  */
 final class ZipHelper {
 
+    /**
+     * Default interval in milliseconds between two progress reports.
+     */
+    static final long DEFAULT_PROGRESS_INTERVAL = 10000L;
+
+    /**
+     * Milliseconds added to the modification time of appended files, same
+     * as the Ant zip task does by default.
+     */
+    private static final long ROUNDUP_MILLIS = 1999L;
+
+    /**
+     * Size of the buffer used to compare the appended files.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     /**
      * Create a new {@code ZipHelper} instance.
      */
@@ -99,15 +135,59 @@ final class ZipHelper {
             final List<ZipFileSet> fsets,
             final File target) {
 
-        Project antProject = new Project();
-        antProject.addBuildListener(new AntBuildListener(mavenLog));
-        Iterator it = properties.keySet().iterator();
-        while (it.hasNext()) {
-            String key = (String) it.next();
-            antProject.setProperty(key, properties.getProperty(key));
-        }
+        zip(properties, mavenLog, duplicate, fsets, target,
+                DEFAULT_PROGRESS_INTERVAL);
+    }
+
+    /**
+     * Create a zip file.
+     * @param properties Ant project properties
+     * @param mavenLog Maven logger
+     * @param duplicate behavior for duplicate file, one of "add", "preserve"
+     * or "fail"
+     * @param fsets list of {@code ZipFileSet} that describe the resources to
+     * zip
+     * @param target the {@code File} instance for the zip file to create
+     * @param progressInterval interval in milliseconds between two progress
+     * reports
+     */
+    void zip(final Properties properties,
+            final Log mavenLog,
+            final String duplicate,
+            final List<ZipFileSet> fsets,
+            final File target,
+            final long progressInterval) {
+
+        zip(properties, mavenLog, duplicate, fsets, target, progressInterval,
+                Collections.<File>emptyList());
+    }
+
+    /**
+     * Create a zip file.
+     * @param properties Ant project properties
+     * @param mavenLog Maven logger
+     * @param duplicate behavior for duplicate file, one of "add", "preserve"
+     * or "fail"
+     * @param fsets list of {@code ZipFileSet} that describe the resources to
+     * zip
+     * @param target the {@code File} instance for the zip file to create,
+     * never added to itself
+     * @param progressInterval interval in milliseconds between two progress
+     * reports
+     * @param excludedFiles files not to add if found in the file sets
+     */
+    void zip(final Properties properties,
+            final Log mavenLog,
+            final String duplicate,
+            final List<ZipFileSet> fsets,
+            final File target,
+            final long progressInterval,
+            final List<File> excludedFiles) {
 
-        Zip zip = new Zip();
+        Project antProject = createProject(properties, mavenLog);
+        ZipProgress progress = new ZipProgress(mavenLog, target,
+                progressInterval);
+        Zip zip = new ProgressZip(progress);
         zip.setProject(antProject);
         zip.setDestFile(target);
         Duplicate df = new Duplicate();
@@ -131,7 +211,10 @@ final class ZipHelper {
             filesets.add(zfs);
         }
 
+        List<File> excluded = new ArrayList<File>(excludedFiles);
+        excluded.add(target);
         for (ZipFileSet fset : filesets) {
+            excludeFiles(antProject, fset, excluded);
             zip.addZipfileset(fset);
             String desc = fset.getDescription();
             if (desc != null && !desc.isEmpty()) {
@@ -139,10 +222,780 @@ final class ZipHelper {
             }
         }
         zip.executeMain();
+        progress.finish();
+    }
+
+    /**
+     * Append to an existing zip file.
+     * The existing central directory is overwritten by the new entries,
+     * followed by an updated central directory ; the existing entries are
+     * not rewritten. The duplicate behavior is applied against the entries
+     * of the existing central directory ; a file identical to the existing
+     * entry of the same name is not added again, so that appending the same
+     * content is idempotent. Only directory based file sets are
+     * supported.
+     * @param properties Ant project properties
+     * @param mavenLog Maven logger
+     * @param duplicate behavior for duplicate file, one of "add", "preserve"
+     * or "fail"
+     * @param fsets list of {@code ZipFileSet} that describe the resources to
+     * add
+     * @param target the zip file to append to, never added to itself
+     * @param excludedFiles files not to add if found in the file sets
+     * @throws IOException if an error occurs while reading or writing, in
+     * which case the zip file is restored
+     */
+    void append(final Properties properties,
+            final Log mavenLog,
+            final String duplicate,
+            final List<ZipFileSet> fsets,
+            final File target,
+            final List<File> excludedFiles) throws IOException {
+
+        Map<String, File> excluded = new HashMap<String, File>();
+        excluded.put(target.getName(), target.getCanonicalFile());
+        for (File file : excludedFiles) {
+            excluded.put(file.getName(), file.getCanonicalFile());
+        }
+
+        Project antProject = createProject(properties, mavenLog);
+        mavenLog.info(String.format("[zip] appending to %s, duplicate: %s",
+                target, duplicate));
+
+        ZipCentralDirectory cd = ZipCentralDirectory.read(target);
+        // last entry wins, like an extraction of the zip file
+        Map<String, ZipCentralDirectory.Entry> existing =
+                new HashMap<String, ZipCentralDirectory.Entry>();
+        for (ZipCentralDirectory.Entry entry : cd.getEntries()) {
+            existing.put(entry.getName(), entry);
+        }
+        Set<String> names = new HashSet<String>(existing.keySet());
+        long start = System.currentTimeMillis();
+        RandomAccessFile raf = new RandomAccessFile(target, "rw");
+        try {
+            // keep the original tail to restore it on failure
+            byte[] tail = new byte[(int) (raf.length() - cd.getOffset())];
+            raf.seek(cd.getOffset());
+            raf.readFully(tail);
+
+            boolean done = false;
+            try {
+                ZipEntryWriter writer = new ZipEntryWriter(raf,
+                        cd.getOffset());
+                writer.addCentralDirectory(Arrays.copyOf(tail,
+                        (int) cd.getSize()), cd.getEntries().size());
+                long bytesIn = 0;
+                int skipped = 0;
+                int unchanged = 0;
+                for (ZipFileSet fset : fsets) {
+                    if (fset.getSrc(antProject) != null) {
+                        throw new ZipException("append does not support file"
+                                + " sets with src: " + fset.getSrc());
+                    }
+                    String desc = fset.getDescription();
+                    if (desc != null && !desc.isEmpty()) {
+                        mavenLog.info(String.format("[zip] %s", desc));
+                    }
+                    String prefix = fset.getPrefix(antProject);
+                    if (prefix.length() > 0 && !prefix.endsWith("/")) {
+                        prefix += "/";
+                    }
+                    String fullpath = fset.getFullpath(antProject);
+                    int dirMode = fset.getDirMode(antProject);
+                    DirectoryScanner ds = fset.getDirectoryScanner(antProject);
+                    File baseDir = ds.getBasedir();
+
+                    for (String dir : ds.getIncludedDirectories()) {
+                        if (dir.isEmpty() || fullpath.length() > 0) {
+                            continue;
+                        }
+                        String vPath = prefix + dir.replace(
+                                File.separatorChar, '/') + "/";
+                        addParentDirs(writer, names, vPath, dirMode);
+                        if (names.add(vPath)) {
+                            writer.writeDirectory(vPath,
+                                    new File(baseDir, dir).lastModified(),
+                                    dirMode);
+                        }
+                    }
+
+                    for (String file : ds.getIncludedFiles()) {
+                        File source = new File(baseDir, file);
+                        File excludedFile = excluded.get(source.getName());
+                        if (excludedFile != null && excludedFile.equals(
+                                source.getCanonicalFile())) {
+                            mavenLog.info("[zip] skipping " + source);
+                            continue;
+                        }
+                        String vPath;
+                        if (fullpath.length() > 0) {
+                            vPath = fullpath;
+                        } else {
+                            vPath = prefix + file.replace(
+                                    File.separatorChar, '/');
+                        }
+                        if (!names.add(vPath)) {
+                            if ("fail".equals(duplicate)) {
+                                throw new ZipException("Duplicate file "
+                                        + vPath + " was found and the"
+                                        + " duplicate attribute is 'fail'.");
+                            }
+                            if ("preserve".equals(duplicate)) {
+                                mavenLog.info("[zip] " + vPath
+                                        + " already added, skipping");
+                                skipped++;
+                                continue;
+                            }
+                            if (isIdentical(source, existing.get(vPath))) {
+                                mavenLog.debug("[zip] " + vPath
+                                        + " unchanged, skipping");
+                                unchanged++;
+                                continue;
+                            }
+                        }
+                        addParentDirs(writer, names, vPath, dirMode);
+                        InputStream in = new FileInputStream(source);
+                        try {
+                            bytesIn += writer.writeFile(vPath, in,
+                                    source.lastModified() + ROUNDUP_MILLIS,
+                                    fset.getFileMode(antProject));
+                        } finally {
+                            in.close();
+                        }
+                    }
+                }
+                long end = writer.finish(cd.getComment());
+                raf.setLength(end);
+                done = true;
+
+                int added = writer.getCount() - cd.getEntries().size();
+                mavenLog.info(String.format(
+                        "[zip] %s: appended %d entries (%d bytes), skipped %d"
+                        + " duplicates and %d unchanged entries, %d entries"
+                        + " in total, %dms",
+                        target.getName(), added, bytesIn, skipped, unchanged,
+                        writer.getCount(),
+                        System.currentTimeMillis() - start));
+            } finally {
+                if (!done) {
+                    raf.seek(cd.getOffset());
+                    raf.write(tail);
+                    raf.setLength(cd.getOffset() + tail.length);
+                }
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Merge the selected entries of zip files into a new zip file.
+     * The entries are copied without being uncompressed, in the order of
+     * the given archives.
+     * @param mavenLog Maven logger
+     * @param duplicate behavior for duplicate files, one of "preserve" (the
+     * first entry wins), "overwrite" (the last entry wins) or "fail"
+     * @param archives the zip files to merge
+     * @param selector the selector of the entries to merge, may be
+     * {@code null}
+     * @param target the zip file to create
+     * @throws IOException if an error occurs while reading or writing
+     */
+    void merge(final Log mavenLog,
+            final String duplicate,
+            final List<File> archives,
+            final IncludeExcludeFileSelector selector,
+            final File target) throws IOException {
+
+        long start = System.currentTimeMillis();
+        Map<String, Integer> sources = new HashMap<String, Integer>();
+        List<Map<String, ZipCentralDirectory.Entry>> selected =
+                new ArrayList<Map<String, ZipCentralDirectory.Entry>>(
+                        archives.size());
+        int skipped = 0;
+        for (int i = 0; i < archives.size(); i++) {
+            File archive = archives.get(i);
+            Map<String, ZipCentralDirectory.Entry> entries =
+                    new LinkedHashMap<String, ZipCentralDirectory.Entry>();
+            selected.add(entries);
+            for (ZipCentralDirectory.Entry entry : MavenHelper.selectEntries(
+                    archive, ZipCentralDirectory.read(archive), selector)) {
+                String name = entry.getName();
+                Integer prev = sources.get(name);
+                if (prev == null) {
+                    sources.put(name, i);
+                    entries.put(name, entry);
+                    continue;
+                }
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if ("fail".equals(duplicate)) {
+                    throw new ZipException("Duplicate file " + name
+                            + " was found in " + archives.get(prev)
+                            + " and " + archive + " and the duplicate"
+                            + " attribute is 'fail'.");
+                }
+                skipped++;
+                if ("overwrite".equals(duplicate)) {
+                    selected.get(prev).remove(name);
+                    sources.put(name, i);
+                    entries.put(name, entry);
+                }
+            }
+        }
+
+        target.getParentFile().mkdirs();
+        RandomAccessFile raf = new RandomAccessFile(target, "rw");
+        boolean done = false;
+        try {
+            ZipEntryWriter writer = new ZipEntryWriter(raf, 0);
+            for (int i = 0; i < archives.size(); i++) {
+                if (selected.get(i).isEmpty()) {
+                    continue;
+                }
+                RandomAccessFile src = new RandomAccessFile(archives.get(i),
+                        "r");
+                try {
+                    for (ZipCentralDirectory.Entry entry
+                            : selected.get(i).values()) {
+                        writer.copyEntry(src, entry);
+                    }
+                } finally {
+                    src.close();
+                }
+            }
+            long end = writer.finish(new byte[0]);
+            raf.setLength(end);
+            done = true;
+            mavenLog.info(String.format(
+                    "[zip] %s: %d entries from %d archives, skipped %d"
+                    + " duplicates, %dms",
+                    target.getName(), writer.getCount(), archives.size(),
+                    skipped, System.currentTimeMillis() - start));
+        } finally {
+            raf.close();
+            if (!done) {
+                target.delete();
+            }
+        }
+    }
+
+    /**
+     * Add the missing parent directories of an entry.
+     * @param writer the writer
+     * @param names the names of the entries already present
+     * @param vPath the entry name
+     * @param dirMode the Unix mode of the directories
+     * @throws IOException if an error occurs while writing
+     */
+    private static void addParentDirs(final ZipEntryWriter writer,
+            final Set<String> names,
+            final String vPath,
+            final int dirMode) throws IOException {
+
+        int idx = vPath.indexOf('/');
+        while (idx > 0 && idx < vPath.length() - 1) {
+            String dir = vPath.substring(0, idx + 1);
+            if (names.add(dir)) {
+                writer.writeDirectory(dir, System.currentTimeMillis(),
+                        dirMode);
+            }
+            idx = vPath.indexOf('/', idx + 1);
+        }
+    }
+
+    /**
+     * Test if a file has the same content as an existing entry, compared by
+     * size and CRC.
+     * @param file the file
+     * @param entry the existing entry, may be {@code null}
+     * @return {@code true} if the content is identical
+     * @throws IOException if an error occurs while reading the file
+     */
+    private static boolean isIdentical(final File file,
+            final ZipCentralDirectory.Entry entry) throws IOException {
+
+        if (entry == null || entry.isDirectory()
+                || entry.getSize() != file.length()) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream in = new FileInputStream(file);
+        try {
+            int n = in.read(buffer);
+            while (n >= 0) {
+                crc.update(buffer, 0, n);
+                n = in.read(buffer);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue() == entry.getCrc();
+    }
+
+    /**
+     * Add an exclude pattern to a directory based file set for each of the
+     * given files located under its directory.
+     * @param antProject the Ant project
+     * @param fset the file set
+     * @param files the files to exclude
+     */
+    private static void excludeFiles(final Project antProject,
+            final ZipFileSet fset,
+            final List<File> files) {
+
+        if (fset.isReference() || fset.getSrc(antProject) != null) {
+            return;
+        }
+        File dir = fset.getDir(antProject);
+        if (dir == null) {
+            return;
+        }
+        String dirPath = dir.getAbsoluteFile().toURI().normalize().getPath();
+        if (!dirPath.endsWith("/")) {
+            dirPath += "/";
+        }
+        for (File file : files) {
+            String path = file.getAbsoluteFile().toURI().normalize()
+                    .getPath();
+            if (path.startsWith(dirPath)) {
+                fset.createExclude().setName(
+                        path.substring(dirPath.length()));
+            }
+        }
+    }
+
+    /**
+     * Create an Ant project.
+     * @param properties Ant project properties
+     * @param mavenLog Maven logger
+     * @return the created {@code Project}
+     */
+    private static Project createProject(final Properties properties,
+            final Log mavenLog) {
+
+        Project antProject = new Project();
+        antProject.addBuildListener(new AntBuildListener(mavenLog));
+        Iterator it = properties.keySet().iterator();
+        while (it.hasNext()) {
+            String key = (String) it.next();
+            antProject.setProperty(key, properties.getProperty(key));
+        }
+        return antProject;
+    }
+
+    /**
+     * {@code Zip} task that feeds a {@link ZipProgress} with the entries and
+     * bytes it writes.
+     */
+    private static final class ProgressZip extends Zip {
+
+        /**
+         * The progress reporter.
+         */
+        private final ZipProgress progress;
+
+        /**
+         * Create a new {@code ProgressZip} instance.
+         * @param zipProgress the progress reporter
+         */
+        private ProgressZip(final ZipProgress zipProgress) {
+            this.progress = zipProgress;
+        }
+
+        @Override
+        protected ArchiveState getResourcesToAdd(
+                final ResourceCollection[] rcs,
+                final File dest,
+                final boolean needsUpdate) {
+
+            ArchiveState state = super.getResourcesToAdd(rcs, dest,
+                    needsUpdate);
+            progress.plan(rcs, state.getResourcesToAdd());
+            return state;
+        }
+
+        @Override
+        protected void zipFile(final InputStream in,
+                final ZipOutputStream zOut,
+                final String vPath,
+                final long lastModified,
+                final File fromArchive,
+                final int mode) throws IOException {
+
+            progress.entryStarted();
+            super.zipFile(new CountingInputStream(in, progress), zOut, vPath,
+                    lastModified, fromArchive, mode);
+            progress.update();
+        }
+    }
+
+    /**
+     * {@code InputStream} that reports the bytes read to a
+     * {@link ZipProgress}.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        /**
+         * The progress reporter.
+         */
+        private final ZipProgress progress;
+
+        /**
+         * Create a new {@code CountingInputStream} instance.
+         * @param in the stream to read from
+         * @param zipProgress the progress reporter
+         */
+        private CountingInputStream(final InputStream in,
+                final ZipProgress zipProgress) {
+            super(in);
+            this.progress = zipProgress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                progress.bytesRead(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+                throws IOException {
+
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                progress.bytesRead(n);
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Rate-limited progress reporter for the creation of a zip file.
+     * Progress (entries, bytes in and out, compression ratio, throughput and
+     * ETA) is logged at most once per interval, and a summary is logged for
+     * each file set once the zip file is complete.
+     */
+    private static final class ZipProgress {
+
+        /**
+         * Number of bytes in a megabyte.
+         */
+        private static final double MB = 1024 * 1024;
+
+        /**
+         * Number of milliseconds in a second.
+         */
+        private static final double SECOND = 1000;
+
+        /**
+         * Factor used to express ratios as percentages.
+         */
+        private static final double PERCENT = 100;
+
+        /**
+         * Maven logger.
+         */
+        private final Log log;
+
+        /**
+         * The zip file being written.
+         */
+        private final File target;
+
+        /**
+         * Interval in milliseconds between two progress reports.
+         */
+        private final long interval;
+
+        /**
+         * Description of each file set.
+         */
+        private String[] names = new String[0];
+
+        /**
+         * Cumulative number of files up to each file set.
+         */
+        private long[] bounds = new long[0];
+
+        /**
+         * Number of entries written for each file set.
+         */
+        private long[] entries = new long[0];
+
+        /**
+         * Number of bytes read for each file set.
+         */
+        private long[] bytesIn = new long[0];
+
+        /**
+         * Number of bytes written for each file set.
+         */
+        private long[] bytesOut = new long[0];
+
+        /**
+         * Time spent in milliseconds for each file set.
+         */
+        private long[] elapsed = new long[0];
+
+        /**
+         * Index of the file set being written.
+         */
+        private int current;
+
+        /**
+         * Total number of entries to write.
+         */
+        private long totalEntries;
+
+        /**
+         * Total number of bytes to read.
+         */
+        private long totalBytes;
+
+        /**
+         * Number of entries written so far.
+         */
+        private long entryCount;
+
+        /**
+         * Number of bytes read so far.
+         */
+        private long byteCount;
+
+        /**
+         * Time at which the first entry was written.
+         */
+        private long start;
+
+        /**
+         * Time of the last progress report.
+         */
+        private long lastReport;
+
+        /**
+         * Time at which the current file set was started.
+         */
+        private long filesetStart;
+
+        /**
+         * Size of the zip file when the current file set was started.
+         */
+        private long filesetOffset;
+
+        /**
+         * Create a new {@code ZipProgress} instance.
+         * @param mavenLog Maven logger
+         * @param zipFile the zip file being written
+         * @param progressInterval interval in milliseconds between two
+         * progress reports
+         */
+        private ZipProgress(final Log mavenLog,
+                final File zipFile,
+                final long progressInterval) {
+
+            this.log = mavenLog;
+            this.target = zipFile;
+            this.interval = progressInterval;
+        }
+
+        /**
+         * Record the resources that are about to be written.
+         * @param rcs the resource collections (file sets)
+         * @param resources the resources to add for each collection
+         */
+        void plan(final ResourceCollection[] rcs,
+                final Resource[][] resources) {
+
+            int len = rcs.length;
+            names = new String[len];
+            bounds = new long[len];
+            entries = new long[len];
+            bytesIn = new long[len];
+            bytesOut = new long[len];
+            elapsed = new long[len];
+            totalBytes = 0;
+            long files = 0;
+            for (int i = 0; i < len; i++) {
+                names[i] = describe(rcs[i]);
+                if (resources != null && i < resources.length) {
+                    for (Resource r : resources[i]) {
+                        if (!r.isDirectory()) {
+                            files++;
+                            totalBytes += Math.max(r.getSize(), 0);
+                        }
+                    }
+                }
+                bounds[i] = files;
+            }
+            totalEntries = files;
+        }
+
+        /**
+         * Record the start of an entry.
+         */
+        void entryStarted() {
+            long now = System.currentTimeMillis();
+            if (entryCount == 0) {
+                start = now;
+                lastReport = now;
+                filesetStart = now;
+            }
+            while (current < bounds.length - 1
+                    && entryCount >= bounds[current]) {
+                closeFileset(now);
+                current++;
+            }
+            entryCount++;
+            if (current < entries.length) {
+                entries[current]++;
+            }
+        }
+
+        /**
+         * Record bytes read for the current entry.
+         * @param n the number of bytes read
+         */
+        void bytesRead(final long n) {
+            byteCount += n;
+            if (current < bytesIn.length) {
+                bytesIn[current] += n;
+            }
+            update();
+        }
+
+        /**
+         * Log the progress if the reporting interval has elapsed.
+         */
+        void update() {
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= interval) {
+                lastReport = now;
+                report(now);
+            }
+        }
+
+        /**
+         * Log the per file set summary.
+         */
+        void finish() {
+            if (entryCount == 0) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            while (current < names.length) {
+                closeFileset(now);
+                current++;
+            }
+            for (int i = 0; i < names.length; i++) {
+                log.info(String.format(
+                        "[zip] %s: %d entries, %.1f MB in, %.1f MB out"
+                        + " (%.1f%%), %.1f MB/s, %.1fs",
+                        names[i], entries[i], bytesIn[i] / MB,
+                        bytesOut[i] / MB, ratio(bytesOut[i], bytesIn[i]),
+                        rate(bytesIn[i], elapsed[i]),
+                        elapsed[i] / SECOND));
+            }
+            long time = now - start;
+            long size = target.length();
+            log.info(String.format(
+                    "[zip] %s: %d entries, %.1f MB in, %.1f MB out (%.1f%%),"
+                    + " %.1f MB/s, %.1fs",
+                    target.getName(), entryCount, byteCount / MB, size / MB,
+                    ratio(size, byteCount), rate(byteCount, time),
+                    time / SECOND));
+        }
+
+        /**
+         * Record the statistics of the current file set.
+         * @param now the current time
+         */
+        private void closeFileset(final long now) {
+            long size = target.length();
+            if (current < names.length) {
+                bytesOut[current] = size - filesetOffset;
+                elapsed[current] = now - filesetStart;
+            }
+            filesetOffset = size;
+            filesetStart = now;
+        }
+
+        /**
+         * Log the progress.
+         * @param now the current time
+         */
+        private void report(final long now) {
+            long time = now - start;
+            double rate = rate(byteCount, time);
+            long size = target.length();
+            String eta;
+            if (rate > 0) {
+                eta = String.format("%.0fs",
+                        (totalBytes - byteCount) / MB / rate);
+            } else {
+                eta = "n/a";
+            }
+            log.info(String.format(
+                    "[zip] %d/%d entries, %.1f/%.1f MB in, %.1f MB out"
+                    + " (%.1f%%), %.1f MB/s, ETA %s",
+                    entryCount, totalEntries, byteCount / MB,
+                    totalBytes / MB, size / MB, ratio(size, byteCount), rate,
+                    eta));
+        }
+
+        /**
+         * Compute a compression ratio.
+         * @param out bytes written
+         * @param in bytes read
+         * @return the ratio as a percentage
+         */
+        private static double ratio(final long out, final long in) {
+            if (in <= 0) {
+                return 0;
+            }
+            return out * PERCENT / in;
+        }
+
+        /**
+         * Compute a throughput.
+         * @param bytes bytes processed
+         * @param millis time spent in milliseconds
+         * @return the throughput in megabytes per second
+         */
+        private static double rate(final long bytes, final long millis) {
+            if (millis <= 0) {
+                return 0;
+            }
+            return bytes / MB / (millis / SECOND);
+        }
+
+        /**
+         * Describe a resource collection.
+         * @param rc the resource collection
+         * @return the description
+         */
+        private static String describe(final ResourceCollection rc) {
+            if (rc instanceof ZipFileSet) {
+                ZipFileSet fset = (ZipFileSet) rc;
+                if (fset.getSrc() != null) {
+                    return fset.getSrc().getPath();
+                }
+                if (fset.getDir() != null) {
+                    return fset.getDir().getPath();
+                }
+            }
+            return String.valueOf(rc);
+        }
     }
 
     /**
      * {@code BuilderListener} implementation to log Ant events.
+     * Verbose events are only forwarded when debug logging is enabled.
      */
     private static final class AntBuildListener implements BuildListener {
 
@@ -191,9 +1044,9 @@ final class ZipHelper {
         @Override
         public void messageLogged(final BuildEvent event) {
             if (event.getPriority() < MAX_EVENT_PRIORITY) {
-                log.info(String.format("[zip] %s", event.getMessage()));
-            } else {
-                log.debug(String.format("[zip] %s", event.getMessage()));
+                log.info("[zip] " + event.getMessage());
+            } else if (log.isDebugEnabled()) {
+                log.debug("[zip] " + event.getMessage());
             }
         }
     }
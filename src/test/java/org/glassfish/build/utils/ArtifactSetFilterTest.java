@@ -0,0 +1,280 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.build.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.shared.artifact.filter.collection.ArtifactIdFilter;
+import org.apache.maven.shared.artifact.filter.collection.ClassifierFilter;
+import org.apache.maven.shared.artifact.filter.collection.FilterArtifacts;
+import org.apache.maven.shared.artifact.filter.collection.GroupIdFilter;
+import org.apache.maven.shared.artifact.filter.collection.ProjectTransitivityFilter;
+import org.apache.maven.shared.artifact.filter.collection.ScopeFilter;
+import org.apache.maven.shared.artifact.filter.collection.TypeFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compare {@link ArtifactSetFilter} with the filters of
+ * {@code maven-common-artifact-filters} it replaces.
+ */
+public final class ArtifactSetFilterTest {
+
+    /**
+     * Number of random cases.
+     */
+    private static final int CASES = 2000;
+
+    /**
+     * Maximum number of artifacts in a case.
+     */
+    private static final int MAX_ARTIFACTS = 40;
+
+    /**
+     * Candidate groupIds.
+     */
+    private static final String[] GROUP_IDS = {
+        "org.glassfish", "org.glassfish.main", "org.glassfish.hk2",
+        "javax.servlet", "com.sun"
+    };
+
+    /**
+     * Candidate artifactIds.
+     */
+    private static final String[] ARTIFACT_IDS = {
+        "api", "impl", "core", "servlet-api", "nucleus"
+    };
+
+    /**
+     * Candidate types.
+     */
+    private static final String[] TYPES = {
+        "jar", "war", "pom", "zip"
+    };
+
+    /**
+     * Candidate classifiers.
+     */
+    private static final String[] CLASSIFIERS = {
+        null, "sources", "tests"
+    };
+
+    /**
+     * Candidate scopes.
+     */
+    private static final String[] SCOPES = {
+        Artifact.SCOPE_COMPILE, Artifact.SCOPE_PROVIDED,
+        Artifact.SCOPE_RUNTIME, Artifact.SCOPE_TEST, Artifact.SCOPE_SYSTEM
+    };
+
+    /**
+     * Candidate scope configurations.
+     */
+    private static final String[] SCOPE_CONFIGS = {
+        "", "", "compile", "provided", "runtime", "test", "system"
+    };
+
+    /**
+     * Candidate include and exclude lists for the types.
+     */
+    private static final String[] TYPE_CONFIGS = {
+        "", "", "jar", "jar,war", " war , zip", "pom"
+    };
+
+    /**
+     * Candidate include and exclude lists for the classifiers.
+     */
+    private static final String[] CLASSIFIER_CONFIGS = {
+        "", "", "sources", "sources,tests"
+    };
+
+    /**
+     * Candidate include and exclude lists for the groupIds.
+     */
+    private static final String[] GROUP_ID_CONFIGS = {
+        "", "", "org.glassfish", "org.glassfish.main,com.sun", "javax"
+    };
+
+    /**
+     * Candidate include and exclude lists for the artifactIds.
+     */
+    private static final String[] ARTIFACT_ID_CONFIGS = {
+        "", "", "api", "api,impl", "servlet-api", "nucleus,core"
+    };
+
+    /**
+     * Random cases must select the same artifacts as
+     * {@code maven-common-artifact-filters}, in dependency order.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void testSameAsCommonArtifactFilters() throws Exception {
+        Random random = new Random(0);
+        for (int i = 0; i < CASES; i++) {
+            Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+            int size = random.nextInt(MAX_ARTIFACTS);
+            for (int j = 0; j < size; j++) {
+                artifacts.add(newArtifact(random, j));
+            }
+            Set<Artifact> direct = new LinkedHashSet<Artifact>();
+            for (Artifact artifact : artifacts) {
+                if (random.nextBoolean()) {
+                    direct.add(artifact);
+                }
+            }
+            String[] config = new String[]{
+                pick(random, SCOPE_CONFIGS),
+                pick(random, SCOPE_CONFIGS),
+                pick(random, TYPE_CONFIGS),
+                pick(random, TYPE_CONFIGS),
+                pick(random, CLASSIFIER_CONFIGS),
+                pick(random, CLASSIFIER_CONFIGS),
+                pick(random, GROUP_ID_CONFIGS),
+                pick(random, GROUP_ID_CONFIGS),
+                pick(random, ARTIFACT_ID_CONFIGS),
+                pick(random, ARTIFACT_ID_CONFIGS)
+            };
+            if ("test".equals(config[1])) {
+                // rejected by both implementations
+                config[1] = "";
+            }
+            boolean excludeTransitive = random.nextBoolean();
+            String desc = "case " + i + ": transitive=" + !excludeTransitive
+                    + " config=" + Arrays.toString(config);
+
+            Set<Artifact> expected = commonFilter(artifacts, direct,
+                    excludeTransitive, config);
+            Set<Artifact> actual = ArtifactSetFilter.compile(direct,
+                    excludeTransitive, config[0], config[1], config[2],
+                    config[3], config[4], config[5], config[6], config[7],
+                    config[8], config[9]).filter(artifacts);
+
+            // membership
+            assertEquals(desc, expected, actual);
+
+            // dependency order
+            List<Artifact> ordered = new ArrayList<Artifact>();
+            for (Artifact artifact : artifacts) {
+                if (expected.contains(artifact)) {
+                    ordered.add(artifact);
+                }
+            }
+            assertEquals(desc, ordered, new ArrayList<Artifact>(actual));
+        }
+    }
+
+    /**
+     * Filter artifacts with {@code maven-common-artifact-filters}, the way
+     * {@link MavenHelper#filterArtifacts} used to.
+     * @param artifacts the artifacts to filter
+     * @param direct the direct dependencies
+     * @param excludeTransitive exclude transitive dependencies
+     * @param config the scope, type, classifier, groupId and artifactId
+     * include and exclude configurations
+     * @return the filtered artifacts
+     * @throws Exception if an error occurs
+     */
+    @SuppressWarnings("unchecked")
+    private static Set<Artifact> commonFilter(final Set<Artifact> artifacts,
+            final Set<Artifact> direct,
+            final boolean excludeTransitive,
+            final String[] config) throws Exception {
+
+        FilterArtifacts filter = new FilterArtifacts();
+        filter.addFilter(new ProjectTransitivityFilter(direct,
+                excludeTransitive));
+        filter.addFilter(new ScopeFilter(clean(config[0]), clean(config[1])));
+        filter.addFilter(new TypeFilter(clean(config[2]), clean(config[3])));
+        filter.addFilter(new ClassifierFilter(clean(config[4]),
+                clean(config[5])));
+        filter.addFilter(new GroupIdFilter(clean(config[6]),
+                clean(config[7])));
+        filter.addFilter(new ArtifactIdFilter(clean(config[8]),
+                clean(config[9])));
+        return filter.filter(artifacts);
+    }
+
+    /**
+     * Clean a configuration string the way the mojos do.
+     * @param str the configuration string
+     * @return the cleaned string
+     */
+    private static String clean(final String str) {
+        return MavenHelper.cleanToBeTokenizedString(str);
+    }
+
+    /**
+     * Create a random artifact.
+     * @param random the random generator
+     * @param index a unique index used as the version
+     * @return the artifact
+     */
+    private static Artifact newArtifact(final Random random,
+            final int index) {
+
+        String type = pick(random, TYPES);
+        return new DefaultArtifact(pick(random, GROUP_IDS),
+                pick(random, ARTIFACT_IDS),
+                VersionRange.createFromVersion("1." + index),
+                pick(random, SCOPES), type, pick(random, CLASSIFIERS),
+                new DefaultArtifactHandler(type));
+    }
+
+    /**
+     * Pick a random value.
+     * @param random the random generator
+     * @param values the candidate values
+     * @return the picked value
+     */
+    private static String pick(final Random random, final String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.build.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.glassfish.build.utils.ZipCentralDirectoryTest.readBytes;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests for {@link MavenHelper}.
+ */
+public final class MavenHelperTest {
+
+    /**
+     * Temporary directory.
+     */
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * The generated pom is byte for byte the one written by the former
+     * reader/writer implementation of {@code generate-pom}, for an ASCII pom
+     * whose header has mixed line endings.
+     * @throws IOException if an error occurs
+     * @throws MojoExecutionException if an error occurs while writing
+     */
+    @Test
+    public void testWriteGeneratedPom() throws IOException,
+            MojoExecutionException {
+
+        File source = tmp.newFile("pom.xml");
+        FileOutputStream out = new FileOutputStream(source);
+        try {
+            out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"
+                    + "<!--\r\n    license header\r\n-->\n\n"
+                    + "<!-- comment -->\r"
+                    + "<project>\n  <modelVersion>4.0.0</modelVersion>\n"
+                    + "</project>\n").getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+
+        Model model = MavenHelper.readModel(source);
+        model.setGroupId("org.glassfish.test");
+        model.setArtifactId("test");
+        model.setVersion("1.0");
+        model.setName("test pom");
+        Dependency dep = new Dependency();
+        dep.setGroupId("org.glassfish.test");
+        dep.setArtifactId("dep");
+        dep.setVersion("2.0");
+        model.setDependencies(Arrays.asList(dep));
+
+        File expected = tmp.newFile("expected.pom");
+        legacyWriteGeneratedPom(model, source, expected);
+        File actual = tmp.newFile("actual.pom");
+        MavenHelper.writeGeneratedPom(model, source, actual);
+        assertArrayEquals(readBytes(expected), readBytes(actual));
+    }
+
+    /**
+     * Write a generated pom the way {@code generate-pom} used to: the header
+     * lines of the source pom followed by the model without its XML
+     * declaration, with the platform encoding.
+     * @param model the model
+     * @param source the source pom
+     * @param target the file to write
+     * @throws IOException if an error occurs
+     * @throws MojoExecutionException if an error occurs while writing
+     */
+    private static void legacyWriteGeneratedPom(final Model model,
+            final File source,
+            final File target) throws IOException, MojoExecutionException {
+
+        FileWriter fw = new FileWriter(target);
+        BufferedReader br = new BufferedReader(new FileReader(source));
+        try {
+            String line = br.readLine();
+            while (line != null && !line.startsWith("<project")) {
+                fw.write(line);
+                fw.write('\n');
+                line = br.readLine();
+            }
+            String pom = MavenHelper.modelAsString(model);
+            fw.write(pom.substring(pom.indexOf('\n')));
+        } finally {
+            br.close();
+            fw.close();
+        }
+    }
+}
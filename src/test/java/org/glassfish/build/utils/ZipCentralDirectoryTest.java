@@ -0,0 +1,369 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.build.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ZipCentralDirectory}.
+ */
+public final class ZipCentralDirectoryTest {
+
+    /**
+     * Offset of the central directory size in the end of central directory
+     * record.
+     */
+    private static final int EOCD_CD_SIZE_OFFSET = 12;
+
+    /**
+     * Offset of the uncompressed size in a central directory file header.
+     */
+    private static final int CFH_SIZE_OFFSET = 24;
+
+    /**
+     * Temporary directory.
+     */
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * The entries must match the ones read by {@code java.util.zip}.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testReadEntries() throws IOException {
+        File zip = tmp.newFile("test.zip");
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            zos.putNextEntry(new ZipEntry("dir/"));
+            zos.closeEntry();
+            writeEntry(zos, "dir/deflated.txt", "deflated content");
+            writeStoredEntry(zos, "stored.txt", "stored content");
+            writeEntry(zos, "été.txt", "utf-8 name");
+        } finally {
+            IOUtil.close(zos);
+        }
+
+        List<ZipCentralDirectory.Entry> entries =
+                ZipCentralDirectory.read(zip).getEntries();
+        assertEquals(4, entries.size());
+        ZipFile zipFile = new ZipFile(zip);
+        RandomAccessFile raf = new RandomAccessFile(zip, "r");
+        try {
+            for (ZipCentralDirectory.Entry entry : entries) {
+                ZipEntry expected = zipFile.getEntry(entry.getName());
+                assertTrue(entry.getName(), expected != null);
+                assertEquals(expected.isDirectory(), entry.isDirectory());
+                assertEquals(expected.getMethod(), entry.getMethod());
+                assertEquals(expected.getSize(), entry.getSize());
+                assertEquals(expected.getCompressedSize(),
+                        entry.getCompressedSize());
+                assertEquals(expected.getCrc(), entry.getCrc());
+                if (!entry.isDirectory()) {
+                    assertEquals(read(zipFile.getInputStream(expected)),
+                            read(ZipCentralDirectory.getInputStream(raf,
+                                    entry)));
+                }
+            }
+        } finally {
+            raf.close();
+            zipFile.close();
+        }
+    }
+
+    /**
+     * Zip files written without zip64 support have a truncated entry count
+     * when they hold more than 65535 entries.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testTruncatedEntryCount() throws IOException {
+        File zip = tmp.newFile("large.zip");
+        int count = 0x10000 + 2;
+        org.apache.tools.zip.ZipOutputStream zos =
+                new org.apache.tools.zip.ZipOutputStream(zip);
+        try {
+            for (int i = 0; i < count; i++) {
+                zos.putNextEntry(new org.apache.tools.zip.ZipEntry(
+                        "e" + i));
+                zos.closeEntry();
+            }
+        } finally {
+            zos.close();
+        }
+        assertEquals(count, ZipCentralDirectory.read(zip).getEntries()
+                .size());
+    }
+
+    /**
+     * A file that is not a zip file is rejected with a
+     * {@code ZipException}.
+     * @throws IOException if an error occurs
+     */
+    @Test(expected = ZipException.class)
+    public void testNotAZip() throws IOException {
+        File file = tmp.newFile("not.zip");
+        FileUtils.fileWrite(file.getPath(), "UTF-8", "not a zip file");
+        ZipCentralDirectory.read(file);
+    }
+
+    /**
+     * A central directory size larger than the file is rejected with a
+     * {@code ZipException}.
+     * @throws IOException if an error occurs
+     */
+    @Test(expected = ZipException.class)
+    public void testInvalidCentralDirectorySize() throws IOException {
+        File zip = createZip();
+        byte[] bytes = readBytes(zip);
+        putInt(bytes, findEocd(bytes) + EOCD_CD_SIZE_OFFSET, 0x7FFFFFF0);
+        ZipCentralDirectory.read(write(zip, bytes));
+    }
+
+    /**
+     * A truncated zip64 extra field is rejected with a
+     * {@code ZipException}.
+     * @throws IOException if an error occurs
+     */
+    @Test(expected = ZipException.class)
+    public void testInvalidZip64ExtraField() throws IOException {
+        File zip = tmp.newFile("extra.zip");
+        // java.util.zip drops zip64 extra fields set by the caller
+        org.apache.tools.zip.ZipOutputStream zos =
+                new org.apache.tools.zip.ZipOutputStream(zip);
+        try {
+            org.apache.tools.zip.ZipEntry entry =
+                    new org.apache.tools.zip.ZipEntry("a.txt");
+            // zip64 extended information without data
+            entry.setExtra(new byte[]{1, 0, 0, 0});
+            zos.putNextEntry(entry);
+            zos.write(new byte[]{'a'});
+            zos.closeEntry();
+        } finally {
+            zos.close();
+        }
+        byte[] bytes = readBytes(zip);
+        int cfh = (int) ZipCentralDirectory.read(zip).getOffset();
+        putInt(bytes, cfh + CFH_SIZE_OFFSET, 0xFFFFFFFF);
+        ZipCentralDirectory.read(write(zip, bytes));
+    }
+
+    /**
+     * Truncated zip files are rejected with a {@code ZipException}.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testTruncated() throws IOException {
+        File zip = createZip();
+        byte[] bytes = readBytes(zip);
+        for (int len = 0; len < bytes.length; len++) {
+            byte[] truncated = new byte[len];
+            System.arraycopy(bytes, 0, truncated, 0, len);
+            try {
+                ZipCentralDirectory.read(write(zip, truncated));
+                fail("truncated to " + len + " bytes");
+            } catch (ZipException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Create a zip file with a few entries.
+     * @return the zip file
+     * @throws IOException if an error occurs
+     */
+    private File createZip() throws IOException {
+        File zip = tmp.newFile();
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            writeEntry(zos, "a.txt", "a");
+            writeEntry(zos, "b/c.txt", "c");
+        } finally {
+            IOUtil.close(zos);
+        }
+        return zip;
+    }
+
+    /**
+     * Write a deflated entry.
+     * @param zos the zip stream
+     * @param name the entry name
+     * @param content the entry content
+     * @throws IOException if an error occurs
+     */
+    static void writeEntry(final ZipOutputStream zos,
+            final String name,
+            final String content) throws IOException {
+
+        zos.putNextEntry(new ZipEntry(name));
+        zos.write(content.getBytes("UTF-8"));
+        zos.closeEntry();
+    }
+
+    /**
+     * Write a stored entry.
+     * @param zos the zip stream
+     * @param name the entry name
+     * @param content the entry content
+     * @throws IOException if an error occurs
+     */
+    static void writeStoredEntry(final ZipOutputStream zos,
+            final String name,
+            final String content) throws IOException {
+
+        byte[] bytes = content.getBytes("UTF-8");
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCompressedSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        zos.putNextEntry(entry);
+        zos.write(bytes);
+        zos.closeEntry();
+    }
+
+    /**
+     * Read a stream fully.
+     * @param in the stream
+     * @return the content
+     * @throws IOException if an error occurs
+     */
+    private static String read(final InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            IOUtil.copy(in, baos);
+            return baos.toString("UTF-8");
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Read the content of a file.
+     * @param file the file
+     * @return the content
+     * @throws IOException if an error occurs
+     */
+    static byte[] readBytes(final File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return IOUtil.toByteArray(in);
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Find the end of central directory record.
+     * @param bytes the zip file content
+     * @return the offset of the record
+     */
+    private static int findEocd(final byte[] bytes) {
+        for (int i = bytes.length - 4; i >= 0; i--) {
+            if (bytes[i] == 'P' && bytes[i + 1] == 'K' && bytes[i + 2] == 5
+                    && bytes[i + 3] == 6) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("no end of central directory");
+    }
+
+    /**
+     * Write a little-endian int.
+     * @param bytes the buffer
+     * @param pos the position
+     * @param value the value
+     */
+    private static void putInt(final byte[] bytes,
+            final int pos,
+            final int value) {
+
+        for (int i = 0; i < 4; i++) {
+            bytes[pos + i] = (byte) (value >> (8 * i));
+        }
+    }
+
+    /**
+     * Write a modified copy of a zip file.
+     * @param zip the original zip file
+     * @param bytes the content to write
+     * @return the written file
+     * @throws IOException if an error occurs
+     */
+    private File write(final File zip, final byte[] bytes)
+            throws IOException {
+
+        File file = new File(zip.getPath() + ".modified");
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            IOUtil.close(out);
+        }
+        return file;
+    }
+}
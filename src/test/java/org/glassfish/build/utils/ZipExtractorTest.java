@@ -0,0 +1,303 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.build.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.glassfish.build.utils.ZipCentralDirectoryTest.writeEntry;
+import static org.glassfish.build.utils.ZipCentralDirectoryTest.writeStoredEntry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ZipExtractor}.
+ */
+public final class ZipExtractorTest {
+
+    /**
+     * Number of entries of the generated zip files.
+     */
+    private static final int ENTRIES = 50;
+
+    /**
+     * Unix mode of a symbolic link.
+     */
+    private static final int SYMLINK_MODE = 0120777;
+
+    /**
+     * Temporary directory.
+     */
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * All the combinations of threads and read modes extract the same
+     * files.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testExtract() throws IOException {
+        File zip = tmp.newFile("test.zip");
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            zos.putNextEntry(new ZipEntry("dir/"));
+            zos.closeEntry();
+            for (int i = 0; i < ENTRIES; i++) {
+                if (i % 2 == 0) {
+                    writeEntry(zos, "dir/f" + i + ".txt", content(i));
+                } else {
+                    writeStoredEntry(zos, "g" + i + ".txt", content(i));
+                }
+            }
+        } finally {
+            IOUtil.close(zos);
+        }
+        for (int threads : new int[]{1, 4}) {
+            for (boolean mapped : new boolean[]{true, false}) {
+                File dest = tmp.newFolder();
+                ZipExtractor extractor = new ZipExtractor(zip, dest);
+                extractor.setMapped(mapped);
+                assertEquals(ENTRIES, extractor.extract(entries(zip),
+                        threads));
+                for (int i = 0; i < ENTRIES; i++) {
+                    String name;
+                    if (i % 2 == 0) {
+                        name = "dir/f" + i + ".txt";
+                    } else {
+                        name = "g" + i + ".txt";
+                    }
+                    assertEquals(content(i), FileUtils.fileRead(
+                            new File(dest, name), "UTF-8"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Names with {@code .} and {@code ..} segments that stay in the
+     * destination directory are extracted.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testDotSegments() throws IOException {
+        File zip = createZip("./", "./a.txt", "d/../b.txt", "d/./c.txt");
+        File dest = tmp.newFolder();
+        assertEquals(3, new ZipExtractor(zip, dest).extract(entries(zip)));
+        assertEquals("./a.txt", FileUtils.fileRead(new File(dest, "a.txt"),
+                "UTF-8"));
+        assertEquals("d/../b.txt", FileUtils.fileRead(
+                new File(dest, "b.txt"), "UTF-8"));
+        assertEquals("d/./c.txt", FileUtils.fileRead(
+                new File(dest, "d/c.txt"), "UTF-8"));
+    }
+
+    /**
+     * Names that go above the destination directory are rejected.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testEscape() throws IOException {
+        for (String name : new String[]{"../a.txt", "d/../../a.txt"}) {
+            File zip = createZip(name);
+            File dest = tmp.newFolder();
+            try {
+                new ZipExtractor(zip, dest).extract(entries(zip));
+                throw new AssertionError(name + " extracted");
+            } catch (ZipException ex) {
+                assertFalse(new File(dest.getParentFile(), "a.txt")
+                        .exists());
+            }
+        }
+    }
+
+    /**
+     * Entries under a symbolic link to a directory are extracted through
+     * the link.
+     * @throws IOException if an error occurs
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testSymlinkedDirectory()
+            throws IOException, InterruptedException {
+
+        File dest = tmp.newFolder();
+        File target = tmp.newFolder();
+        Process ln = new ProcessBuilder("ln", "-s", target.getPath(),
+                new File(dest, "link").getPath()).start();
+        Assume.assumeTrue(ln.waitFor() == 0);
+
+        File zip = createZip("link/a.txt");
+        assertEquals(1, new ZipExtractor(zip, dest).extract(entries(zip)));
+        assertEquals("link/a.txt", FileUtils.fileRead(
+                new File(target, "a.txt"), "UTF-8"));
+    }
+
+    /**
+     * Symbolic link entries are not supported, the unarchiver handles them.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testSymlinkEntryNotSupported() throws IOException {
+        File zip = tmp.newFile("link.zip");
+        org.apache.tools.zip.ZipOutputStream zos =
+                new org.apache.tools.zip.ZipOutputStream(zip);
+        try {
+            org.apache.tools.zip.ZipEntry entry =
+                    new org.apache.tools.zip.ZipEntry("link");
+            entry.setUnixMode(SYMLINK_MODE);
+            zos.putNextEntry(entry);
+            zos.write("target".getBytes("UTF-8"));
+            zos.closeEntry();
+        } finally {
+            zos.close();
+        }
+        assertFalse(ZipExtractor.isSupported(entries(zip)));
+        assertTrue(ZipExtractor.isSupported(entries(createZip("a.txt"))));
+    }
+
+    /**
+     * The last entry of a duplicated name wins.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testDuplicateNames() throws IOException {
+        File zip = tmp.newFile("dup.zip");
+        org.apache.tools.zip.ZipOutputStream zos =
+                new org.apache.tools.zip.ZipOutputStream(zip);
+        try {
+            for (String content : new String[]{"first", "second"}) {
+                zos.putNextEntry(new org.apache.tools.zip.ZipEntry("x.txt"));
+                zos.write(content.getBytes("UTF-8"));
+                zos.closeEntry();
+            }
+        } finally {
+            zos.close();
+        }
+        File dest = tmp.newFolder();
+        assertEquals(1, new ZipExtractor(zip, dest).extract(entries(zip),
+                /* threads */ 2));
+        assertEquals("second", FileUtils.fileRead(new File(dest, "x.txt"),
+                "UTF-8"));
+    }
+
+    /**
+     * Identical files are left untouched when requested.
+     * @throws IOException if an error occurs
+     */
+    @Test
+    public void testSkipIdentical() throws IOException {
+        File zip = createZip("a.txt", "b/c.txt");
+        File dest = tmp.newFolder();
+        assertEquals(2, new ZipExtractor(zip, dest).extract(entries(zip)));
+        FileUtils.fileWrite(new File(dest, "a.txt").getPath(), "UTF-8",
+                "modified");
+
+        ZipExtractor extractor = new ZipExtractor(zip, dest);
+        extractor.setSkipIdentical(true);
+        assertEquals(1, extractor.extract(entries(zip)));
+        assertEquals(1, extractor.getSkipped());
+        assertEquals("a.txt", FileUtils.fileRead(new File(dest, "a.txt"),
+                "UTF-8"));
+    }
+
+    /**
+     * Create a zip file whose entries contain their name.
+     * @param names the entry names
+     * @return the zip file
+     * @throws IOException if an error occurs
+     */
+    private File createZip(final String... names) throws IOException {
+        File zip = tmp.newFile();
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            for (String name : names) {
+                if (name.endsWith("/")) {
+                    zos.putNextEntry(new ZipEntry(name));
+                    zos.closeEntry();
+                } else {
+                    writeEntry(zos, name, name);
+                }
+            }
+        } finally {
+            IOUtil.close(zos);
+        }
+        return zip;
+    }
+
+    /**
+     * Read the entries of a zip file.
+     * @param zip the zip file
+     * @return the entries
+     * @throws IOException if an error occurs
+     */
+    private static List<ZipCentralDirectory.Entry> entries(final File zip)
+            throws IOException {
+
+        return ZipCentralDirectory.read(zip).getEntries();
+    }
+
+    /**
+     * Get the content of a generated entry.
+     * @param i the entry index
+     * @return the content
+     */
+    private static String content(final int i) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j <= i; j++) {
+            sb.append("line ").append(j).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2018 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.build.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.tools.ant.types.ZipFileSet;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ZipHelper}.
+ */
+public final class ZipHelperTest {
+
+    /**
+     * Temporary directory.
+     */
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Maven logger.
+     */
+    private final Log log = new SystemStreamLog();
+
+    /**
+     * Appending the same content again leaves the zip file unchanged,
+     * appending modified content adds new entries that win on extraction.
+     * @throws IOException if an error occurs
+     * @throws MojoExecutionException if an error occurs while appending
+     */
+    @Test
+    public void testAppendRoundTrip() throws IOException,
+            MojoExecutionException {
+
+        File dir = tmp.newFolder("content");
+        write(new File(dir, "a.txt"), "a");
+        write(new File(new File(dir, "sub"), "b.txt"), "b");
+        File zip = new File(tmp.getRoot(), "test.zip");
+        List<ZipFileSet> fsets = Collections.singletonList(
+                MavenHelper.createZipFileSet(dir, "", ""));
+        MavenHelper.createZip(new Properties(), log, "add", fsets, zip);
+        int entries = ZipCentralDirectory.read(zip).getEntries().size();
+
+        write(new File(dir, "c.txt"), "c");
+        MavenHelper.appendZip(new Properties(), log, "add", fsets, zip,
+                Collections.<File>emptyList());
+        long length = zip.length();
+        assertEquals(entries + 1,
+                ZipCentralDirectory.read(zip).getEntries().size());
+
+        for (int i = 0; i < 2; i++) {
+            MavenHelper.appendZip(new Properties(), log, "add", fsets, zip,
+                    Collections.<File>emptyList());
+            assertEquals(length, zip.length());
+            assertEquals(entries + 1,
+                    ZipCentralDirectory.read(zip).getEntries().size());
+        }
+
+        write(new File(dir, "a.txt"), "modified");
+        MavenHelper.appendZip(new Properties(), log, "add", fsets, zip,
+                Collections.<File>emptyList());
+        assertEquals(entries + 2,
+                ZipCentralDirectory.read(zip).getEntries().size());
+        MavenHelper.appendZip(new Properties(), log, "add", fsets, zip,
+                Collections.<File>emptyList());
+        assertEquals(entries + 2,
+                ZipCentralDirectory.read(zip).getEntries().size());
+
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            assertEquals("b", read(zipFile, "sub/b.txt"));
+            assertEquals("c", read(zipFile, "c.txt"));
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    /**
+     * Write a file, creating its parent directory.
+     * @param file the file
+     * @param content the content
+     * @throws IOException if an error occurs
+     */
+    private static void write(final File file, final String content)
+            throws IOException {
+
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read an entry of a zip file.
+     * @param zipFile the zip file
+     * @param name the entry name
+     * @return the content
+     * @throws IOException if an error occurs
+     */
+    private static String read(final ZipFile zipFile, final String name)
+            throws IOException {
+
+        InputStream in = zipFile.getInputStream(zipFile.getEntry(name));
+        try {
+            return new String(IOUtil.toByteArray(in), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}